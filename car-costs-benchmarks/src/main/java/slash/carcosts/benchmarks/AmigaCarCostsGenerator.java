@@ -0,0 +1,131 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts.benchmarks;
+
+import slash.carcosts.Currency;
+import slash.carcosts.Filling;
+import slash.carcosts.FuelCosts;
+import slash.carcosts.Maintenance;
+import slash.carcosts.MaintenanceCosts;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+
+/**
+ * Generates synthetic car files in the Amiga CarCosts format.
+ * <p>
+ * The records are written in chunks through <code>FuelCosts</code>
+ * and <code>MaintenanceCosts</code>, so the files are formatted
+ * exactly like the ones the program saves and even files with
+ * millions of records are generated with bounded memory.
+ *
+ * @author Christian Pesch
+ */
+
+public class AmigaCarCostsGenerator {
+    private static final int CHUNK_SIZE = 10000;
+    private static final String[] TITLES = {"Inspektion", "Reifen", "Versicherung", "Steuer", "Werkstatt"};
+
+    public AmigaCarCostsGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Write a car with the given number of fillings and maintenances.
+     */
+    public void generate(File file, int fillings, int maintenances) throws IOException {
+        PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        try {
+            writer.println("#");
+            writer.println("01-Jan-80 0 0 0");
+            writer.println("S-CC 1,Benchmark,EUR");
+            writer.println("#");
+
+            writeFillings(writer, fillings);
+
+            writer.println("#");
+
+            writeMaintenances(writer, maintenances);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeFillings(PrintWriter writer, int count) {
+        Currency euro = Currency.getCurrency("EUR");
+        Calendar date = new GregorianCalendar(1950, Calendar.JANUARY, 1);
+        int mileage = 0;
+
+        FuelCosts fuel = new FuelCosts();
+        for (int i = 0; i < count; i++) {
+            // several fillings per day keep the dates of the 1M row files plausible
+            if (i % 4 == 0)
+                date.add(Calendar.DATE, 1);
+            mileage += 300 + random.nextInt(500);
+            double quantity = round(20.0 + random.nextDouble() * 40.0);
+            double costs = round(quantity * (0.8 + random.nextDouble()));
+            fuel.addFilling(new Filling((Calendar) date.clone(), mileage, quantity, costs, euro));
+
+            if (fuel.getSize() == CHUNK_SIZE) {
+                fuel.writeAmigaCarCosts(writer);
+                fuel.removeAllFillings();
+            }
+        }
+        fuel.writeAmigaCarCosts(writer);
+    }
+
+    private void writeMaintenances(PrintWriter writer, int count) {
+        Currency euro = Currency.getCurrency("EUR");
+        Calendar date = new GregorianCalendar(1950, Calendar.JANUARY, 1);
+        int mileage = 0;
+
+        MaintenanceCosts maintenance = new MaintenanceCosts();
+        for (int i = 0; i < count; i++) {
+            date.add(Calendar.DATE, 7);
+            mileage += 1000 + random.nextInt(5000);
+            String title = TITLES[random.nextInt(TITLES.length)];
+            double costs = round(50.0 + random.nextDouble() * 950.0);
+            maintenance.addMaintenance(new Maintenance((Calendar) date.clone(), mileage, title,
+                    "Rechnung " + i, costs, euro));
+
+            if (maintenance.getSize() == CHUNK_SIZE) {
+                maintenance.writeAmigaCosts(writer);
+                maintenance.removeAllMaintenances();
+            }
+        }
+        maintenance.writeAmigaCosts(writer);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    /**
+     * Generate a file from the command line.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: AmigaCarCostsGenerator <file> <fillings> [<maintenances>] [<seed>]");
+            System.exit(1);
+        }
+
+        int fillings = Integer.parseInt(args[1]);
+        int maintenances = args.length > 2 ? Integer.parseInt(args[2]) : fillings / 10;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 4711L;
+        new AmigaCarCostsGenerator(seed).generate(new File(args[0]), fillings, maintenances);
+    }
+
+    private Random random;
+}
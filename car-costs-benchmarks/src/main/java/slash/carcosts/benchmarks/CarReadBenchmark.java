@@ -0,0 +1,55 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import slash.carcosts.Car;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures <code>Car.read(File)</code> for synthetic car files.
+ *
+ * @author Christian Pesch
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class CarReadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("carcosts-" + rows, ".kfz");
+        new AmigaCarCostsGenerator(4711L).generate(file, rows, rows / 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (!file.delete())
+            file.deleteOnExit();
+    }
+
+    @Benchmark
+    public Car read() throws IOException {
+        Car car = new Car();
+        car.read(file);
+        return car;
+    }
+}
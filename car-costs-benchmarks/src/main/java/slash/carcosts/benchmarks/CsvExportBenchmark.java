@@ -0,0 +1,76 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import slash.carcosts.Car;
+import slash.carcosts.CsvExporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the <code>CsvExporter</code> with writing the fillings
+ * through a <code>PrintWriter</code>.
+ *
+ * @author Christian Pesch
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class CsvExportBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private Car car;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File input = File.createTempFile("carcosts-" + rows, ".kfz");
+        try {
+            new AmigaCarCostsGenerator(4711L).generate(input, rows, rows / 10);
+            car = new Car(input);
+        } finally {
+            if (!input.delete())
+                input.deleteOnExit();
+        }
+        file = File.createTempFile("carcosts-" + rows, ".csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (!file.delete())
+            file.deleteOnExit();
+    }
+
+    @Benchmark
+    public long printWriter() throws IOException {
+        PrintWriter writer = new PrintWriter(file);
+        try {
+            car.getFuelCosts().writeCsv(writer);
+        } finally {
+            writer.close();
+        }
+        return file.length();
+    }
+
+    @Benchmark
+    public long exporter() throws IOException {
+        new CsvExporter().exportFillings(car.getFuelCosts(), file);
+        return file.length();
+    }
+}
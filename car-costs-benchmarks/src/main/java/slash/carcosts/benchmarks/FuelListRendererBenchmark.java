@@ -0,0 +1,90 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import slash.carcosts.Car;
+import slash.carcosts.Filling;
+import slash.carcosts.FillingComparator;
+import slash.carcosts.FuelListRenderer;
+import slash.gui.model.TreeSortingListModel;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering every cell of the fuel list once with an empty
+ * cache of the texts, as it happens when scrolling through the whole
+ * list, and rendering the visible cells again with the cache filled,
+ * as it happens when the list is repainted.
+ *
+ * @author Christian Pesch
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class FuelListRendererBenchmark {
+    private static final int VISIBLE_ROWS = 40;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private JList list;
+    private ListModel model;
+    private FuelListRenderer renderer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File file = File.createTempFile("carcosts-" + rows, ".kfz");
+        try {
+            new AmigaCarCostsGenerator(4711L).generate(file, rows, 0);
+            Car car = new Car(file);
+            model = new TreeSortingListModel(car.getFuelCosts(), new FillingComparator());
+            list = new JList(model);
+            renderer = new FuelListRenderer(car);
+        } finally {
+            if (!file.delete())
+                file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Every cell is formatted, the cache is emptied for each invocation
+     * since it keeps fewer rows than the larger list has.
+     */
+    @Benchmark
+    public void renderAllCold(Blackhole blackhole) {
+        renderer.clearCache();
+        render(model.getSize(), blackhole);
+    }
+
+    /**
+     * The cells are taken from the cache, which the first invocation
+     * fills.
+     */
+    @Benchmark
+    public void renderVisibleWarm(Blackhole blackhole) {
+        render(Math.min(VISIBLE_ROWS, model.getSize()), blackhole);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void render(int count, Blackhole blackhole) {
+        for (int i = 0; i < count; i++) {
+            Filling filling = (Filling) model.getElementAt(i);
+            blackhole.consume(renderer.getListCellRendererComponent(list, filling, i, false, false));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import slash.carcosts.Currency;
+import slash.carcosts.Filling;
+import slash.carcosts.FillingComparator;
+import slash.carcosts.FuelCosts;
+import slash.gui.model.SortingListModel;
+import slash.gui.model.TreeSortingListModel;
+
+import javax.swing.*;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures inserting and removing a filling in the sorting list models
+ * which back the lists of the fuel costs view.
+ *
+ * @author Christian Pesch
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class SortingListModelBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"SortingListModel", "TreeSortingListModel"})
+    public String implementation;
+
+    private FuelCosts fuel;
+    private ListModel model;
+    private Filling[] fillings = new Filling[64];
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Currency euro = Currency.getCurrency("EUR");
+        Random random = new Random(4711L);
+
+        fuel = new FuelCosts();
+        fuel.beginUpdate();
+        for (int i = 0; i < rows; i++)
+            fuel.addFilling(createFilling(random, euro));
+        fuel.endUpdate();
+
+        for (int i = 0; i < fillings.length; i++)
+            fillings[i] = createFilling(random, euro);
+
+        if ("SortingListModel".equals(implementation))
+            model = new SortingListModel(fuel, new FillingComparator());
+        else
+            model = new TreeSortingListModel(fuel, new FillingComparator());
+    }
+
+    private static Filling createFilling(Random random, Currency currency) {
+        Calendar date = new GregorianCalendar(1950 + random.nextInt(70), random.nextInt(12), 1 + random.nextInt(28));
+        return new Filling(date, random.nextInt(500000), 40.0, 50.0, currency);
+    }
+
+    @Benchmark
+    public int insertRemove() {
+        Filling filling = fillings[index];
+        index = (index + 1) % fillings.length;
+
+        fuel.addFilling(filling);
+        fuel.removeFilling(filling);
+        return model.getSize();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import slash.carcosts.Car;
+import slash.carcosts.Filling;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the recalculation of <code>Car.updateModels</code> which
+ * follows a single <code>FuelCosts.changeFilling</code>.
+ *
+ * @author Christian Pesch
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class UpdateModelsBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private Car car;
+    private List<Filling> fillings;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File file = File.createTempFile("carcosts-" + rows, ".kfz");
+        try {
+            new AmigaCarCostsGenerator(4711L).generate(file, rows, rows / 10);
+            car = new Car(file);
+            fillings = car.getFuelCosts().getFillings();
+        } finally {
+            if (!file.delete())
+                file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public double changeFilling() {
+        Filling filling = fillings.get(index);
+        index = (index + 1) % fillings.size();
+
+        filling.getQuantityModel().setValue(filling.getQuantity() + 0.01);
+        car.getFuelCosts().changeFilling(filling);
+        car.flush();
+        return car.getTotalCostsModel().getValue();
+    }
+}
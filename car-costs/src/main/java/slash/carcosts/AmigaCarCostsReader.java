@@ -0,0 +1,259 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.EpochDays;
+import slash.util.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+import java.util.StringTokenizer;
+
+/**
+ * Reads a car in Amiga CarCosts format.
+ * <p>
+ * The reader scans the bytes of the file directly instead of decoding
+ * it into lines and tokens: dates are decoded into days since 1970-01-01
+ * and numbers are parsed without creating <code>String</code>s. Only
+ * the header, titles, notes and unknown currencies are decoded with the
+ * default charset like the files have been written. Large files are
+ * memory mapped.
+ *
+ * @author Christian Pesch
+ */
+
+public class AmigaCarCostsReader {
+    private static final int PROGRESS_INTERVAL = 4096;
+
+    public AmigaCarCostsReader(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the file into the car.
+     */
+    public void read(Car car) throws IOException {
+        read(car, null);
+    }
+
+    /**
+     * Read the file into the car and report the progress to the
+     * monitor, which may be <code>null</code>.
+     */
+    public void read(Car car, ReadMonitor monitor) throws IOException {
+        this.monitor = monitor;
+        records = 0;
+        buffer = Files.load(file);
+        parser.setBuffer(buffer);
+        position = 0;
+        limit = buffer.limit();
+        lineNumber = 0;
+
+        if (!nextLine() || !isSeparator())
+            throw new IOException("Dateikennung '#' nicht gefunden.");
+
+        try {
+            // simply ignore the first line of the amiga file
+            nextLine();
+            readHeader(car);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IOException("Dateikopf nicht korrekt.");
+        }
+
+        if (!nextLine() || !isSeparator())
+            throw new IOException("Dateikennung '#' nicht gefunden.");
+
+        FuelCosts fuel = car.getFuelCosts();
+        MaintenanceCosts maintenance = car.getMaintenanceCosts();
+        fuel.beginUpdate();
+        maintenance.beginUpdate();
+        try {
+            fuel.removeAllFillings();
+            readFillings(fuel);
+            maintenance.removeAllMaintenances();
+            readMaintenances(maintenance);
+            report();
+        } finally {
+            maintenance.endUpdate();
+            fuel.endUpdate();
+            buffer = null;
+            parser.setBuffer(null);
+        }
+    }
+
+    private void readHeader(Car car) throws NoSuchElementException {
+        if (!nextLine())
+            throw new NoSuchElementException();
+
+        StringTokenizer tokenizer = new StringTokenizer(parser.decode(lineStart, lineEnd), ",");
+        car.getSignModel().setValue(tokenizer.nextToken());
+        car.getNameModel().setValue(tokenizer.nextToken());
+
+        // solve EUR transition
+        Currency c = Currency.getCurrency("DM");
+        if (tokenizer.hasMoreTokens())
+            c = Currency.getCurrency(tokenizer.nextToken());
+        car.getCurrencyModel().setValue(c);
+    }
+
+    private void readFillings(FuelCosts fuel) throws IOException {
+        Currency defaultCurrency = Currency.getCurrency("DM");
+
+        while (true) {
+            if (!nextLine())
+                throw new IOException("Invalid filling: missing '#' after line " + lineNumber);
+            if (isSeparator())
+                break;
+
+            try {
+                nextToken();
+                int day = parser.parseDate(tokenStart, tokenEnd, true);
+                nextToken();
+                nextToken();
+                int mileage = parser.parseInt(tokenStart, tokenEnd);
+                nextToken();
+                double quantity = parser.parseDouble(tokenStart, tokenEnd);
+                nextToken();
+                double costs = parser.parseDouble(tokenStart, tokenEnd);
+
+                // solve EUR transition
+                Currency currency = defaultCurrency;
+                if (hasMoreTokens()) {
+                    nextToken();
+                    currency = parser.parseCurrency(tokenStart, tokenEnd);
+                }
+
+                fuel.addFilling(day, mileage, quantity, costs, currency);
+            } catch (Exception e) {
+                e.printStackTrace();
+                throw new IOException("Invalid filling in line " + lineNumber);
+            }
+            recordRead();
+        }
+    }
+
+    private void readMaintenances(MaintenanceCosts maintenance) throws IOException {
+        Currency defaultCurrency = Currency.getCurrency("DM");
+
+        while (nextLine() && !isSeparator()) {
+            try {
+                nextToken();
+                int day = parser.parseDate(tokenStart, tokenEnd, true);
+                nextToken();
+                nextToken();
+                double costs = parser.parseDouble(tokenStart, tokenEnd);
+                int mileage = 0;
+                if (hasMoreTokens()) {
+                    nextToken();
+                    mileage = parser.parseInt(tokenStart, tokenEnd);
+                }
+
+                // solve EUR transition
+                Currency currency = defaultCurrency;
+                if (hasMoreTokens()) {
+                    nextToken();
+                    currency = parser.parseCurrency(tokenStart, tokenEnd);
+                }
+
+                String title = nextLine() ? parser.decode(lineStart, lineEnd) : null;
+                String note = nextLine() ? parser.decode(lineStart, lineEnd) : null;
+
+                maintenance.addMaintenance(new Maintenance(EpochDays.toCalendar(day), mileage,
+                        title, note, costs, currency));
+            } catch (Exception e) {
+                e.printStackTrace();
+                throw new IOException("Invalid maintenance in line " + lineNumber);
+            }
+            recordRead();
+        }
+    }
+
+    private void recordRead() throws InterruptedIOException {
+        if (++records % PROGRESS_INTERVAL == 0)
+            report();
+    }
+
+    private void report() throws InterruptedIOException {
+        if (monitor == null)
+            return;
+        if (monitor.isCanceled())
+            throw new InterruptedIOException("Laden abgebrochen.");
+        monitor.progress(position, limit, records);
+    }
+
+    // --- scanning --------------------------------------------
+
+    /**
+     * Move to the next line, which is terminated by \n, \r or \r\n.
+     *
+     * @return false at the end of the file
+     */
+    private boolean nextLine() {
+        if (position >= limit)
+            return false;
+
+        lineStart = position;
+        int index = position;
+        while (index < limit) {
+            byte b = buffer.get(index);
+            if (b == '\n' || b == '\r')
+                break;
+            index++;
+        }
+        lineEnd = index;
+
+        if (index < limit && buffer.get(index++) == '\r' && index < limit && buffer.get(index) == '\n')
+            index++;
+        position = index;
+
+        cursor = lineStart;
+        lineNumber++;
+        return true;
+    }
+
+    private boolean isSeparator() {
+        return lineEnd > lineStart && buffer.get(lineStart) == '#';
+    }
+
+    private boolean hasMoreTokens() {
+        while (cursor < lineEnd && buffer.get(cursor) == ' ')
+            cursor++;
+        return cursor < lineEnd;
+    }
+
+    /**
+     * Move to the next token of the line, tokens are separated by spaces.
+     */
+    private void nextToken() throws NoSuchElementException {
+        if (!hasMoreTokens())
+            throw new NoSuchElementException();
+
+        tokenStart = cursor;
+        while (cursor < lineEnd && buffer.get(cursor) != ' ')
+            cursor++;
+        tokenEnd = cursor;
+    }
+
+    // --- member variables ------------------------------------
+
+    private File file;
+    private ReadMonitor monitor;
+    private int records;
+    private ByteFieldParser parser = new ByteFieldParser(Charset.defaultCharset());
+
+    private ByteBuffer buffer;
+    private int position, limit;
+    private int lineStart, lineEnd, lineNumber;
+    private int cursor, tokenStart, tokenEnd;
+}
@@ -0,0 +1,265 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.EpochDays;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+
+/**
+ * Parses the fields of the Amiga CarCosts and the CSV files directly
+ * from the bytes of a buffer: dates are decoded into days since
+ * 1970-01-01 and numbers are parsed without creating
+ * <code>String</code>s. Only texts, months with other than ASCII
+ * characters and unknown currencies are decoded with the charset.
+ * <p>
+ * Fields are given by their start and end index in the buffer.
+ *
+ * @author Christian Pesch
+ */
+
+class ByteFieldParser {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAXIMUM_EXACT_MANTISSA = 1L << 53;
+
+    public ByteFieldParser(Charset charset) {
+        this.charset = charset;
+    }
+
+    public void setBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public String decode(int start, int end) {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.limit(end);
+        bytes.position(start);
+        return charset.decode(bytes).toString();
+    }
+
+    /**
+     * Parse a date like 24-Dez-2004 into days since 1970-01-01.
+     *
+     * @param amiga true to parse like the Amiga CarCosts format: years
+     *              before 1950 are moved into the next century and
+     *              unknown months are taken as February. Otherwise only
+     *              years with two digits are windowed and unknown months
+     *              are rejected.
+     */
+    public int parseDate(int start, int end, boolean amiga) throws NoSuchElementException {
+        int index = start;
+        while (index < end && buffer.get(index) == '-')
+            index++;
+        int dayStart = index;
+        while (index < end && buffer.get(index) != '-')
+            index++;
+        int day = parseInt(dayStart, index);
+
+        while (index < end && buffer.get(index) == '-')
+            index++;
+        int monthStart = index;
+        while (index < end && buffer.get(index) != '-')
+            index++;
+        if (monthStart == index)
+            throw new NoSuchElementException();
+        int monthEnd = index;
+        int month = parseMonth(monthStart, monthEnd);
+
+        while (index < end && buffer.get(index) == '-')
+            index++;
+        int yearStart = index;
+        while (index < end && buffer.get(index) != '-')
+            index++;
+        if (yearStart == index)
+            throw new NoSuchElementException();
+        int year = parseInt(yearStart, index);
+
+        if (amiga) {
+            // solve y2k problem by windowing
+            if (year < 150)
+                year += 1900;
+            if (year < 1950)
+                year += 100;
+            if (month == -1)
+                month = 1;
+        } else {
+            if (year < 100)
+                year += year < 50 ? 2000 : 1900;
+            if (month == -1)
+                month = guessMonth(monthStart, monthEnd);
+        }
+        return EpochDays.toEpochDay(year, month, day);
+    }
+
+    /**
+     * @return the index of the month in <code>FuelCosts.months</code>
+     *         or -1 if the month is unknown
+     */
+    public int parseMonth(int start, int end) {
+        String[] months = FuelCosts.months;
+
+        boolean ascii = true;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                ascii = false;
+                break;
+            }
+        }
+
+        if (ascii) {
+            for (int i = 0, c = months.length; i < c; i++) {
+                if (equals(months[i], start, end))
+                    return i;
+            }
+        } else {
+            String month = decode(start, end);
+            for (int i = 0, c = months.length; i < c; i++) {
+                if (months[i].equals(month))
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the month by its first and last character, which are ASCII,
+     * in case the umlaut of March was lost by a charset without it.
+     */
+    private int guessMonth(int start, int end) throws NoSuchElementException {
+        String[] months = FuelCosts.months;
+        int found = -1;
+        for (int i = 0, c = months.length; i < c; i++) {
+            String month = months[i];
+            if (month.charAt(0) == buffer.get(start) && month.charAt(month.length() - 1) == buffer.get(end - 1)) {
+                if (found != -1)
+                    throw new NoSuchElementException("Ambiguous month " + decode(start, end));
+                found = i;
+            }
+        }
+        if (found == -1)
+            throw new NoSuchElementException("Unknown month " + decode(start, end));
+        return found;
+    }
+
+    public boolean equals(String string, int start, int end) {
+        if (string.length() != end - start)
+            return false;
+        for (int i = start; i < end; i++) {
+            if (string.charAt(i - start) != buffer.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    public int parseInt(int start, int end) throws NumberFormatException {
+        int index = start;
+        boolean negative = false;
+        if (index < end && (buffer.get(index) == '-' || buffer.get(index) == '+')) {
+            negative = buffer.get(index) == '-';
+            index++;
+        }
+
+        long value = 0;
+        boolean valid = index < end;
+        while (valid && index < end) {
+            int digit = buffer.get(index++) - '0';
+            if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE)
+                valid = false;
+            else
+                value = value * 10 + digit;
+        }
+        if (negative)
+            value = -value;
+
+        if (!valid || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            return Integer.parseInt(decode(start, end));
+        return (int) value;
+    }
+
+    /**
+     * Parse a decimal like 45.67. Values with up to 53 bits of digits and
+     * 22 fraction digits are computed exactly from their digits, since
+     * both are representable as a double and the division is rounded
+     * correctly. All others are left to <code>Double.parseDouble</code>.
+     */
+    public double parseDouble(int start, int end) throws NumberFormatException {
+        int index = start;
+        boolean negative = false;
+        if (index < end && (buffer.get(index) == '-' || buffer.get(index) == '+')) {
+            negative = buffer.get(index) == '-';
+            index++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean valid = true;
+        while (valid && index < end) {
+            byte b = buffer.get(index++);
+            if (b == '.' && scale == -1)
+                scale = 0;
+            else if (b >= '0' && b <= '9' && mantissa < MAXIMUM_EXACT_MANTISSA) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale != -1)
+                    scale++;
+            } else
+                valid = false;
+        }
+
+        if (!valid || digits == 0 || mantissa > MAXIMUM_EXACT_MANTISSA || scale >= POWERS_OF_TEN.length)
+            return Double.parseDouble(decode(start, end));
+
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    public Currency parseCurrency(int start, int end) {
+        for (int i = 0; i < currencyCount; i++) {
+            if (equals(currencyNames[i], start, end))
+                return currencyValues[i];
+        }
+
+        Currency currency = Currency.getCurrency(decode(start, end));
+        if (currencyCount < currencyNames.length) {
+            byte[] name = new byte[end - start];
+            for (int i = start; i < end; i++)
+                name[i - start] = buffer.get(i);
+            currencyNames[currencyCount] = name;
+            currencyValues[currencyCount] = currency;
+            currencyCount++;
+        }
+        return currency;
+    }
+
+    private boolean equals(byte[] bytes, int start, int end) {
+        if (bytes.length != end - start)
+            return false;
+        for (int i = start; i < end; i++) {
+            if (bytes[i - start] != buffer.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    // --- member variables ------------------------------------
+
+    private Charset charset;
+    private ByteBuffer buffer;
+
+    // the bytes of the currencies found so far
+    private byte[][] currencyNames = new byte[16][];
+    private Currency[] currencyValues = new Currency[16];
+    private int currencyCount = 0;
+}
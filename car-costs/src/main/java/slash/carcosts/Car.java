@@ -10,14 +10,20 @@ package slash.carcosts;
 
 import slash.gui.model.*;
 
+import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.NoSuchElementException;
-import java.util.StringTokenizer;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is a car of the car cost program.
@@ -26,12 +32,32 @@ import java.util.StringTokenizer;
  */
 
 public class Car {
+    public static final long DEFAULT_UPDATE_INTERVAL = 250;
+
+    // don't ask for the event dispatch thread, which starts a toolkit
+    private static final boolean HEADLESS = Boolean.getBoolean("java.awt.headless");
+
+    // updates the models of cars changed off the EDT when their interval is over
+    private static final ScheduledExecutorService updater = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Car updater");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     /**
      * Create a new car.
      */
     public Car() {
-        fuel = new FuelCosts();
+        this(new ListFillingStore());
+    }
+
+    /**
+     * Create a new car which keeps its fillings in the given store.
+     */
+    public Car(FillingStore fillings) {
+        fuel = new FuelCosts(fillings);
         fuel.addListDataListener(modelUpdater);
 
         maintenance = new MaintenanceCosts();
@@ -41,6 +67,8 @@ public class Car {
         name.addChangeListener(modelUpdater);
         sign.addChangeListener(modelUpdater);
 
+        journal = new CarJournal(this);
+
         updateModels();
 
         save.setState(false);
@@ -123,6 +151,67 @@ public class Car {
         return getTotalFuelCosts() + getTotalMaintenanceCosts();
     }
 
+    /**
+     * Calculate the costs in EUR between the dates.
+     */
+    public double getTotalCosts(Calendar from, Calendar to) {
+        return fuel.getTotalCosts(from, to) + maintenance.getTotalCosts(from, to);
+    }
+
+    /**
+     * @param month the month starting with 0 like in Calendar
+     * @return the figures of the month
+     */
+    public PeriodFigures getFigures(int year, int month) {
+        return new PeriodFigures(year, month, fuel.getRollup().getMonth(year, month),
+                maintenance.getRollup().getMonth(year, month));
+    }
+
+    /**
+     * @return the figures of the year
+     */
+    public PeriodFigures getFigures(int year) {
+        return new PeriodFigures(year, PeriodFigures.WHOLE_YEAR, fuel.getRollup().getYear(year),
+                maintenance.getRollup().getYear(year));
+    }
+
+    /**
+     * @return the figures of the months with fillings or maintenances
+     *         in ascending order
+     */
+    public List<PeriodFigures> getMonthlyFigures() {
+        List<PeriodFigures> result = new ArrayList<PeriodFigures>();
+        for (int key : merge(fuel.getRollup().getMonths(), maintenance.getRollup().getMonths()))
+            result.add(getFigures(key / 12, key % 12));
+        return result;
+    }
+
+    /**
+     * @return the figures of the years with fillings or maintenances
+     *         in ascending order
+     */
+    public List<PeriodFigures> getYearlyFigures() {
+        List<PeriodFigures> result = new ArrayList<PeriodFigures>();
+        for (int year : merge(fuel.getRollup().getYears(), maintenance.getRollup().getYears()))
+            result.add(getFigures(year));
+        return result;
+    }
+
+    private static int[] merge(int[] first, int[] second) {
+        int[] result = new int[first.length + second.length];
+        int i = 0, j = 0, count = 0;
+        while (i < first.length || j < second.length) {
+            int value;
+            if (j == second.length || (i < first.length && first[i] <= second[j]))
+                value = first[i++];
+            else
+                value = second[j++];
+            if (count == 0 || result[count - 1] != value)
+                result[count++] = value;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
     /**
      * Calculate data.
      */
@@ -271,106 +360,262 @@ public class Car {
         return currency.getValue().fromEuro(value);
     }
 
+    /**
+     * Calculate the figures of the car in EUR.
+     */
+    public CarStatistics getStatistics() {
+        return new CarStatistics(fuel, maintenance, getEarliestDate(), getLatestDate());
+    }
+
+    /**
+     * Update the derived models, their listeners are notified after all
+     * of them have been updated.
+     */
     private void updateModels() {
-        int difference = fuel.getMaximumMileage() - fuel.getMinimumMileage();
-
-        mileage.setValue(difference);
-        fuelQuantity.setValue(getFuelQuantity());
-
-        totalFuelCosts.setValue(fromEuro(getTotalFuelCosts()));
-        totalMaintenanceCosts.setValue(fromEuro(getTotalMaintenanceCosts()));
-        totalCosts.setValue(fromEuro(getTotalCosts()));
-        avFuelCosts.setValue(fromEuro(getTotalFuelCosts() /
-                difference *
-                100.0));
-        avMaintenanceCosts.setValue(fromEuro(getTotalMaintenanceCosts() /
-                difference *
-                100.0));
-        avTotalCosts.setValue(fromEuro(getTotalCosts() /
-                difference *
-                100.0));
-
-        long latestDays =
-                getLatestDate().get(Calendar.YEAR) * 365 +
-                        (getLatestDate().get(Calendar.MONTH) + 1) * 30 +
-                        getLatestDate().get(Calendar.DAY_OF_MONTH);
-
-        long earliestDays =
-                getEarliestDate().get(Calendar.YEAR) * 365 +
-                        (getEarliestDate().get(Calendar.MONTH) + 1) * 30 +
-                        getEarliestDate().get(Calendar.DAY_OF_MONTH);
-
-        double years = (latestDays - earliestDays) / 365.0;
-
-        averageMileage.setValue(difference / years);
-        averageQuantity.setValue(getFuelQuantity() /
-                difference *
-                100.0);
-        averageFuelQuantityCosts.setValue(fromEuro(getTotalFuelCosts()) / getFuelQuantity());
-
-        fromDate.setValue(getEarliestDate());
-        toDate.setValue(getLatestDate());
+        Object event = CarEvents.beginUpdateModels();
+        long start = System.nanoTime();
+        ModelTransaction.begin();
+        try {
+            Calendar earliest = getEarliestDate();
+            Calendar latest = getLatestDate();
+            CarStatistics statistics = new CarStatistics(fuel, maintenance, earliest, latest);
+
+            mileage.setValue((int) statistics.getMileage());
+            fuelQuantity.setValue(statistics.getFuelQuantity());
+
+            totalFuelCosts.setValue(fromEuro(statistics.getTotalFuelCosts()));
+            totalMaintenanceCosts.setValue(fromEuro(statistics.getTotalMaintenanceCosts()));
+            totalCosts.setValue(fromEuro(statistics.getTotalCosts()));
+            avFuelCosts.setValue(fromEuro(statistics.getAverageFuelCosts()));
+            avMaintenanceCosts.setValue(fromEuro(statistics.getAverageMaintenanceCosts()));
+            avTotalCosts.setValue(fromEuro(statistics.getAverageTotalCosts()));
+
+            averageMileage.setValue(statistics.getAverageMileage());
+            averageQuantity.setValue(statistics.getAverageQuantity());
+            averageFuelQuantityCosts.setValue(fromEuro(statistics.getTotalFuelCosts()) / statistics.getFuelQuantity());
+
+            fromDate.setValue(earliest);
+            toDate.setValue(latest);
+        } finally {
+            ModelTransaction.end();
+
+            CarMetrics metrics = this.metrics;
+            if (metrics != null)
+                metrics.updatedModels(System.nanoTime() - start);
+            CarEvents.commitUpdateModels(event, fuel.getSize(), maintenance.getSize());
+        }
+    }
 
+    /**
+     * Mark the car as changed and schedule the update of the models, so
+     * that a burst of changes updates them only once. On the Event
+     * Dispatch Thread the update runs after the pending events have been
+     * processed, on other threads and without a display at most once
+     * per update interval: changes within the interval are updated when
+     * it is over. While the car is read or in a bulk update nothing is
+     * updated, since the models are still changed, the reader or the
+     * caller of the bulk update has to {@link #flush()}.
+     */
+    private void modelsChanged() {
         save.setState(true);
+
+        if (!HEADLESS && SwingUtilities.isEventDispatchThread()) {
+            synchronized (this) {
+                dirty = true;
+                if (flushScheduled)
+                    return;
+                flushScheduled = true;
+            }
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    synchronized (Car.this) {
+                        flushScheduled = false;
+                    }
+                    flush();
+                }
+            });
+        } else {
+            synchronized (this) {
+                dirty = true;
+                if (reading > 0 || fuel.isUpdating() || maintenance.isUpdating())
+                    return;
+
+                long wait = lastUpdate + updateInterval - System.currentTimeMillis();
+                if (wait > 0) {
+                    if (!trailingFlushScheduled) {
+                        trailingFlushScheduled = true;
+                        updater.schedule(new Runnable() {
+                            public void run() {
+                                trailingFlush();
+                            }
+                        }, wait, TimeUnit.MILLISECONDS);
+                    }
+                    return;
+                }
+            }
+            flush();
+        }
     }
 
-    //-- storage support -------------------------------------------------
+    /**
+     * Update the models at the end of an update interval unless a read
+     * started in the meantime, which flushes when it is done. With a
+     * display the models are updated on the Event Dispatch Thread.
+     */
+    private void trailingFlush() {
+        synchronized (this) {
+            trailingFlushScheduled = false;
+            if (reading > 0)
+                return;
+        }
 
-    private void readFirstLine(String line) throws Exception {
-        // simply ignore the first line of the amiga file
+        if (!HEADLESS && !SwingUtilities.isEventDispatchThread())
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    trailingFlush();
+                }
+            });
+        else
+            flush();
+    }
+
+    /**
+     * Update the models now if changes are pending. Call this before
+     * reading the models when the car is changed off the Event Dispatch
+     * Thread.
+     */
+    public void flush() {
+        // the updates of two threads must not overtake each other
+        synchronized (updateLock) {
+            synchronized (this) {
+                if (!dirty)
+                    return;
+                dirty = false;
+                lastUpdate = System.currentTimeMillis();
+            }
+            updateModels();
+        }
     }
 
-    private void readSecondLine(String line) throws NoSuchElementException {
-        StringTokenizer tokenizer = new StringTokenizer(line, ",");
-        sign.setValue(tokenizer.nextToken());
-        name.setValue(tokenizer.nextToken());
+    /**
+     * @return the minimum milliseconds between two updates of the models
+     *         off the Event Dispatch Thread
+     */
+    public long getUpdateInterval() {
+        return updateInterval;
+    }
 
-        // solve EUR transition
-        Currency c = Currency.getCurrency("DM");
-        if (tokenizer.hasMoreTokens()) {
-            String currencyString = tokenizer.nextToken();
-            c = Currency.getCurrency(currencyString);
-        }
-        currency.setValue(c);
+    public void setUpdateInterval(long updateInterval) {
+        this.updateInterval = updateInterval;
     }
 
+    //-- storage support -------------------------------------------------
+
     /**
-     * Read in Amiga CarCosts format.
+     * Read a snapshot or the Amiga CarCosts format.
      */
     public void read(File file) throws IOException {
-        FileReader fileReader = new FileReader(file);
-        BufferedReader buffReader = new BufferedReader(fileReader);
-        String line = buffReader.readLine();
-        if (!line.startsWith("#"))
-            throw new IOException("Dateikennung '#' nicht gefunden.");
+        read(file, null);
+    }
 
+    /**
+     * Read a snapshot or the Amiga CarCosts format and report the
+     * progress to the monitor, which may be <code>null</code>.
+     */
+    public void read(File file, ReadMonitor monitor) throws IOException {
+        Object event = CarEvents.beginRead();
+
+        synchronized (this) {
+            reading++;
+        }
+        boolean snapshot;
         try {
-            readFirstLine(buffReader.readLine());
-            readSecondLine(buffReader.readLine());
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new IOException("Dateikopf nicht korrekt.");
+            journal.detach();
+            snapshot = CarSnapshot.isSnapshot(file);
+            if (snapshot) {
+                CarSnapshot.read(file, this, monitor);
+                journal.replay(file);
+            } else
+                new AmigaCarCostsReader(file).read(this, monitor);
+        } finally {
+            synchronized (this) {
+                reading--;
+            }
         }
 
-        line = buffReader.readLine();
-        if (!line.startsWith("#"))
-            throw new IOException("Dateikennung '#' nicht gefunden.");
+        flush();
 
-        fuel.read(buffReader);
-        maintenance.read(buffReader);
+        save.setState(false);
 
-        buffReader.close();
-        buffReader.close();
+        CarEvents.commitRead(event, file, snapshot ? CarEvents.SNAPSHOT : CarEvents.AMIGA_CAR_COSTS,
+                fuel.getSize(), maintenance.getSize());
+    }
 
-        updateModels();
+    /**
+     * Save the car: if it has been read from or saved to the snapshot
+     * before, only the changes since then are appended to its journal,
+     * otherwise the whole snapshot is written.
+     *
+     * @see CarJournal
+     * @see CarSaver#saveLater(File)
+     */
+    public void save(File file) throws IOException {
+        getSaver().save(file);
+    }
 
-        save.setState(false);
+    /**
+     * Write the binary snapshot format and start a new journal for it.
+     */
+    public void writeSnapshot(File file) throws IOException {
+        getSaver().writeSnapshot(file);
     }
 
     /**
-     * Write Amiga CarCosts format.
+     * Get the journal of the changes since the snapshot was written.
+     */
+    public CarJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Get the saver which writes the car on a worker thread, it is
+     * created with the first save.
+     */
+    public synchronized CarSaver getSaver() {
+        if (saver == null)
+            saver = new CarSaver(this);
+        return saver;
+    }
+
+    /**
+     * Get the queue which adds fillings and maintenances from worker
+     * threads on the Event Dispatch Thread, it is created when it is
+     * first asked for.
+     */
+    public synchronized CarIngest getIngest() {
+        if (ingest == null)
+            ingest = new CarIngest(this);
+        return ingest;
+    }
+
+    /**
+     * Get the metrics which are published via JMX while the car is open.
+     * They are created when the car is opened in a view and count the
+     * events from then on.
+     */
+    public synchronized CarMetrics getMetrics() {
+        if (metrics == null)
+            metrics = new CarMetrics(this);
+        return metrics;
+    }
+
+    /**
+     * Export Amiga CarCosts format.
      */
     public void writeAmigaCarCosts(File file) throws IOException {
+        Object event = CarEvents.beginWrite();
+
+        flush();
         PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)));
         writer.println("#");
         writer.println("01-Jan-80 0 0 0");
@@ -385,17 +630,40 @@ public class Car {
 
         writer.close();
 
-        save.setState(false);
+        CarEvents.commitWrite(event, file, CarEvents.AMIGA_CAR_COSTS, fuel.getSize(), maintenance.getSize());
     }
 
+    /**
+     * Export the maintenances and fillings as CSV files next to the file.
+     *
+     * @see CsvExporter
+     */
     public void writeCsv(File file) throws IOException {
-        PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(new File(file.getAbsolutePath() + "-maintenance.csv"))));
-        maintenance.writeCsv(writer);
-        writer.close();
+        writeCsv(file, new CsvExporter());
+    }
 
-        writer = new PrintWriter(new BufferedWriter(new FileWriter(new File(file.getAbsolutePath() + "-fuel.csv"))));
-        fuel.writeCsv(writer);
-        writer.close();
+    public void writeCsv(File file, CsvExporter exporter) throws IOException {
+        Object event = CarEvents.beginWrite();
+
+        flush();
+        exporter.export(this, file);
+
+        CarEvents.commitWrite(event, file, CarEvents.CSV, fuel.getSize(), maintenance.getSize());
+    }
+
+    /**
+     * Append the fillings and maintenances of the CSV files next to
+     * the file, which have been exported with {@link #writeCsv(File)}.
+     *
+     * @see CsvImporter
+     */
+    public void readCsv(File file) throws IOException {
+        readCsv(file, new CsvImporter());
+    }
+
+    public void readCsv(File file, CsvImporter importer) throws IOException {
+        importer.read(this, file);
+        flush();
     }
 
 
@@ -408,21 +676,25 @@ public class Car {
 
     // --- inner classes ---------------------------------------
 
+    /**
+     * Updates the models when the fillings, maintenances, currency,
+     * name or sign change.
+     */
     public class ModelUpdater implements ListDataListener, ChangeListener {
         public void contentsChanged(ListDataEvent e) {
-            updateModels();
+            modelsChanged();
         }
 
         public void intervalAdded(ListDataEvent e) {
-            updateModels();
+            modelsChanged();
         }
 
         public void intervalRemoved(ListDataEvent e) {
-            updateModels();
+            modelsChanged();
         }
 
         public void stateChanged(ChangeEvent e) {
-            updateModels();
+            modelsChanged();
         }
     }
 
@@ -430,8 +702,19 @@ public class Car {
 
     private FuelCosts fuel;
     private MaintenanceCosts maintenance;
+    private CarJournal journal;
+    private CarSaver saver;
+    private CarIngest ingest;
+    private volatile CarMetrics metrics;
 
     private ModelUpdater modelUpdater = new ModelUpdater();
+    private boolean dirty = false;
+    private boolean flushScheduled = false;
+    private boolean trailingFlushScheduled = false;
+    private int reading = 0;
+    private final Object updateLock = new Object();
+    private long lastUpdate = 0;
+    private volatile long updateInterval = DEFAULT_UPDATE_INTERVAL;
     private BooleanModel save = new DefaultBooleanModel();
 
     private CurrencyModel currency = new CurrencyModel(Currency.getCurrency("DM"));
@@ -20,7 +20,6 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.io.IOException;
 import java.util.Locale;
 import java.util.ResourceBundle;
 import java.util.logging.LogManager;
@@ -149,9 +148,14 @@ public class CarCosts {
     }
 
     /**
-     * Start the Program.
+     * Start the Program. With <code>--report</code> the figures of the
+     * given cars are printed without a user interface.
      */
     public static void main(String[] args) {
+        if (args.length > 0 && CarCostsReport.REPORT_OPTION.equals(args[0])) {
+            System.exit(CarCostsReport.run(args));
+        }
+
         CarCosts carCosts = new CarCosts();
         carCosts.initialize(args);
     }
@@ -178,20 +182,12 @@ public class CarCosts {
         return view;
     }
 
+    /**
+     * Open a view which loads the car from the file in the background,
+     * so that several files are read in parallel.
+     */
     public void openCarView(File file) {
-        try {
-            Car car = new Car(file);
-            createCarView().setCar(file, car);
-        } catch (IOException e) {
-            e.printStackTrace();
-
-            JOptionPane.showMessageDialog(null, Util.formatString(CarCosts.getBundle().getString("load-car-failed"),
-                    new Object[]{file.getName(), e}),
-                    CarCosts.getBundle().getString("carcosts-title"),
-                    JOptionPane.ERROR_MESSAGE);
-
-            createCarView();
-        }
+        createCarView().load(file);
     }
 
     // --- Inner classes for actions --------------------------------
@@ -243,6 +239,7 @@ public class CarCosts {
                     view.save();
                 }
             }
+            view.waitForSave();
 
             exit(0);
         }
@@ -0,0 +1,190 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.Files;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prints the figures of cars as text or CSV without a user interface.
+ * <p>
+ * The cars are read one after another and dropped after their figures
+ * have been printed, so the memory needed is bounded by the largest car.
+ * Directories are searched for car files.
+ *
+ * @author Christian Pesch
+ */
+
+public class CarCostsReport {
+    public static final String REPORT_OPTION = "--report";
+    public static final String CSV_OPTION = "--csv";
+
+    public CarCostsReport(PrintWriter writer, boolean csv) {
+        this.writer = writer;
+        this.csv = csv;
+
+        numberFormat.applyPattern("###,##0.00");
+    }
+
+    /**
+     * Report the cars in the files and directories.
+     *
+     * @return the number of files which could not be read
+     */
+    public int report(List<File> files) {
+        if (csv)
+            writer.println("Datei;Auto;Kennzeichen;von;bis;Kilometer;Liter;km/Jahr;Verbrauch/100 km;Kosten/l;" +
+                    "Treibstoffkosten;Unterhaltskosten;Gesamtkosten;" +
+                    "Treibstoffkosten/100 km;Unterhaltskosten/100 km;Gesamtkosten/100 km;Währung");
+
+        int failures = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                if (children == null)
+                    continue;
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (child.isFile() && FleetService.CAR_EXTENSION.equalsIgnoreCase(Files.getExtension(child)))
+                        failures += report(child);
+                }
+            } else
+                failures += report(file);
+        }
+
+        if (!csv && count > 1)
+            printText(count + " Autos", null, null, total, Currency.getCurrency("EUR"));
+        writer.flush();
+        return failures;
+    }
+
+    private int report(File file) {
+        Car car = new Car(new ColumnarFillingStore());
+        try {
+            car.read(file);
+        } catch (IOException e) {
+            System.err.println(file + ": " + e.getMessage());
+            return 1;
+        }
+
+        CarStatistics statistics = car.getStatistics();
+        total = total.plus(statistics);
+        count++;
+
+        if (csv)
+            printCsv(file, car, statistics);
+        else
+            printText(file.getPath() + " (" + car.getName() + ", " + car.getSign() + ")",
+                    car.getEarliestDate(), car.getLatestDate(), statistics, car.getCurrency());
+        writer.flush();
+        return 0;
+    }
+
+    private void printCsv(File file, Car car, CarStatistics statistics) {
+        Currency currency = car.getCurrency();
+        writer.println(file.getPath() + ";" +
+                car.getName() + ";" +
+                car.getSign() + ";" +
+                dateFormat.format(car.getEarliestDate().getTime()) + ";" +
+                dateFormat.format(car.getLatestDate().getTime()) + ";" +
+                statistics.getMileage() + ";" +
+                statistics.getFuelQuantity() + ";" +
+                statistics.getAverageMileage() + ";" +
+                statistics.getAverageQuantity() + ";" +
+                currency.fromEuro(statistics.getTotalFuelCosts()) / statistics.getFuelQuantity() + ";" +
+                currency.fromEuro(statistics.getTotalFuelCosts()) + ";" +
+                currency.fromEuro(statistics.getTotalMaintenanceCosts()) + ";" +
+                currency.fromEuro(statistics.getTotalCosts()) + ";" +
+                currency.fromEuro(statistics.getAverageFuelCosts()) + ";" +
+                currency.fromEuro(statistics.getAverageMaintenanceCosts()) + ";" +
+                currency.fromEuro(statistics.getAverageTotalCosts()) + ";" +
+                currency.getName());
+    }
+
+    private void printText(String title, Calendar earliest, Calendar latest,
+                           CarStatistics statistics, Currency currency) {
+        writer.println(title);
+        if (earliest != null && latest != null)
+            writer.println("  Zeitraum:          " + dateFormat.format(earliest.getTime()) +
+                    " bis " + dateFormat.format(latest.getTime()));
+        writer.println("  Kilometer:         " + statistics.getMileage() + " km");
+        writer.println("  Liter:             " + format(statistics.getFuelQuantity()) + " l");
+        writer.println("  km/Jahr:           " + format(statistics.getAverageMileage()));
+        writer.println("  Verbrauch/100 km:  " + format(statistics.getAverageQuantity()) + " l");
+        writer.println("  Kosten/l:          " + format(currency.fromEuro(statistics.getTotalFuelCosts()) /
+                statistics.getFuelQuantity()) + " " + currency.getName());
+        writer.println("  Treibstoffkosten:  " + format(currency.fromEuro(statistics.getTotalFuelCosts())) +
+                " " + currency.getName() + ", " + format(currency.fromEuro(statistics.getAverageFuelCosts())) + "/100 km");
+        writer.println("  Unterhaltskosten:  " + format(currency.fromEuro(statistics.getTotalMaintenanceCosts())) +
+                " " + currency.getName() + ", " + format(currency.fromEuro(statistics.getAverageMaintenanceCosts())) + "/100 km");
+        writer.println("  Gesamtkosten:      " + format(currency.fromEuro(statistics.getTotalCosts())) +
+                " " + currency.getName() + ", " + format(currency.fromEuro(statistics.getAverageTotalCosts())) + "/100 km");
+    }
+
+    private String format(double value) {
+        return numberFormat.format(value);
+    }
+
+    /**
+     * Print the report for the command line arguments behind
+     * <code>--report</code>.
+     *
+     * @return the exit code for the program
+     */
+    public static int run(String[] args) {
+        // make sure nothing starts a toolkit
+        System.setProperty("java.awt.headless", "true");
+
+        boolean csv = false;
+        List<File> files = new ArrayList<File>();
+        for (String arg : args) {
+            if (CSV_OPTION.equals(arg))
+                csv = true;
+            else if (!REPORT_OPTION.equals(arg))
+                files.add(new File(arg));
+        }
+
+        if (files.isEmpty()) {
+            System.err.println("usage: CarCosts " + REPORT_OPTION + " [" + CSV_OPTION + "] <file or directory>...");
+            return 1;
+        }
+
+        PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        int failures = new CarCostsReport(writer, csv).report(files);
+        return failures > 0 ? 2 : 0;
+    }
+
+    /**
+     * Print the report without loading the classes of the user interface.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    // --- member variables ------------------------------------
+
+    private PrintWriter writer;
+    private boolean csv;
+    private DecimalFormat numberFormat = (DecimalFormat) DecimalFormat.getInstance(Locale.GERMAN);
+    private SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy");
+    private CarStatistics total = CarStatistics.EMPTY;
+    private int count = 0;
+}
@@ -0,0 +1,200 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.FlightRecorderSupport;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.io.File;
+
+/**
+ * The Flight Recorder events of reading, writing and recomputing a car
+ * and of rendering its lists. They cost next to nothing unless a
+ * recording enables them, for example with
+ * <code>-XX:StartFlightRecording</code> or from JDK Mission Control.
+ * <p>
+ * The events are begun and committed with the methods of this class,
+ * which hand them out as <code>Object</code>s and do nothing on a
+ * runtime without the Flight Recorder, where the events don't load.
+ *
+ * @author Christian Pesch
+ */
+
+final class CarEvents {
+    public static final String SNAPSHOT = "snapshot";
+    public static final String JOURNAL = "journal";
+    public static final String AMIGA_CAR_COSTS = "amiga";
+    public static final String CSV = "csv";
+
+    private static final boolean AVAILABLE = FlightRecorderSupport.isAvailable();
+
+    private CarEvents() {
+    }
+
+    static Object beginRead() {
+        if (!AVAILABLE)
+            return null;
+        ReadEvent event = new ReadEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitRead(Object handle, File file, String format, int fillings, int maintenances) {
+        if (handle == null)
+            return;
+        ReadEvent event = (ReadEvent) handle;
+        if (event.shouldCommit()) {
+            event.path = file.getPath();
+            event.format = format;
+            event.fillings = fillings;
+            event.maintenances = maintenances;
+            event.commit();
+        }
+    }
+
+    static Object beginWrite() {
+        if (!AVAILABLE)
+            return null;
+        WriteEvent event = new WriteEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitWrite(Object handle, File file, String format, int fillings, int maintenances) {
+        if (handle == null)
+            return;
+        WriteEvent event = (WriteEvent) handle;
+        if (event.shouldCommit()) {
+            event.path = file.getPath();
+            event.format = format;
+            event.fillings = fillings;
+            event.maintenances = maintenances;
+            event.commit();
+        }
+    }
+
+    static Object beginUpdateModels() {
+        if (!AVAILABLE)
+            return null;
+        UpdateModelsEvent event = new UpdateModelsEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitUpdateModels(Object handle, int fillings, int maintenances) {
+        if (handle == null)
+            return;
+        UpdateModelsEvent event = (UpdateModelsEvent) handle;
+        if (event.shouldCommit()) {
+            event.fillings = fillings;
+            event.maintenances = maintenances;
+            event.commit();
+        }
+    }
+
+    static Object beginRender() {
+        if (!AVAILABLE)
+            return null;
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitRender(Object handle, String renderer, int index, boolean formatted) {
+        if (handle == null)
+            return;
+        RenderEvent event = (RenderEvent) handle;
+        if (event.shouldCommit()) {
+            event.renderer = renderer;
+            event.index = index;
+            event.formatted = formatted;
+            event.commit();
+        }
+    }
+
+    // --- inner classes ---------------------------------------
+
+    @Name("slash.carcosts.Read")
+    @Label("Read Car")
+    @Category({"CarCosts", "Storage"})
+    @StackTrace(false)
+    static class ReadEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Format")
+        String format;
+
+        @Label("Fillings")
+        int fillings;
+
+        @Label("Maintenances")
+        int maintenances;
+    }
+
+    @Name("slash.carcosts.Write")
+    @Label("Write Car")
+    @Category({"CarCosts", "Storage"})
+    @StackTrace(false)
+    static class WriteEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Format")
+        String format;
+
+        @Label("Fillings")
+        int fillings;
+
+        @Label("Maintenances")
+        int maintenances;
+    }
+
+    @Name("slash.carcosts.UpdateModels")
+    @Label("Update Models")
+    @Description("Recompute the statistics of a car and notify the views")
+    @Category({"CarCosts", "Models"})
+    @StackTrace(false)
+    static class UpdateModelsEvent extends Event {
+        @Label("Fillings")
+        int fillings;
+
+        @Label("Maintenances")
+        int maintenances;
+    }
+
+    /**
+     * Fires for every cell painted, so it has to be enabled explicitly.
+     */
+    @Name("slash.carcosts.Render")
+    @Label("Render Cell")
+    @Category({"CarCosts", "Rendering"})
+    @StackTrace(false)
+    @Enabled(false)
+    @Threshold("0 ms")
+    static class RenderEvent extends Event {
+        @Label("Renderer")
+        String renderer;
+
+        @Label("Index")
+        int index;
+
+        @Label("Formatted")
+        @Description("The texts of the cell were formatted instead of taken from the cache")
+        boolean formatted;
+    }
+}
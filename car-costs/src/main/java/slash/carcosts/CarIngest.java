@@ -0,0 +1,229 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import javax.swing.*;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands fillings and maintenances from worker threads to the Event
+ * Dispatch Thread, which is the only thread that changes the
+ * <code>FuelCosts</code> and <code>MaintenanceCosts</code> of a car
+ * on display.
+ * <p>
+ * Any number of threads append records to a linked queue without
+ * locking: each swaps itself in as the last record and links its
+ * predecessor to it. The Event Dispatch Thread takes records from the
+ * queue in batches, each batch is a bulk update which fires a single
+ * event and ends after the frame time, so that painting and input
+ * are processed between the batches. The queue holds at most
+ * capacity records, appending blocks until the batches make room.
+ *
+ * @author Christian Pesch
+ */
+
+public class CarIngest {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    public static final long DEFAULT_FRAME_TIME = 10;
+
+    private static final int DEADLINE_CHECK_INTERVAL = 16;
+
+    public CarIngest(Car car) {
+        this(car, DEFAULT_CAPACITY);
+    }
+
+    public CarIngest(Car car, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity " + capacity + " is less than 1");
+        this.car = car;
+        this.capacity = capacity;
+        this.permits = new Semaphore(capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the maximum milliseconds of a batch on the Event Dispatch
+     *         Thread
+     */
+    public long getFrameTime() {
+        return frameTime;
+    }
+
+    public void setFrameTime(long frameTime) {
+        this.frameTime = frameTime;
+    }
+
+    /**
+     * Append a filling from its values, blocks while the queue is full.
+     * On the Event Dispatch Thread a full queue is an error instead.
+     *
+     * @param epochDay the date as days since 1970-01-01
+     */
+    public void addFilling(int epochDay, int mileage, double quantity, double costs, Currency currency) throws InterruptedIOException {
+        Record record = new Record();
+        record.day = epochDay;
+        record.mileage = mileage;
+        record.quantity = quantity;
+        record.costs = costs;
+        record.currency = currency;
+        push(record);
+    }
+
+    /**
+     * Append the maintenance, blocks while the queue is full. On the
+     * Event Dispatch Thread a full queue is an error instead.
+     */
+    public void addMaintenance(Maintenance maintenance) throws InterruptedIOException {
+        Record record = new Record();
+        record.maintenance = maintenance;
+        push(record);
+    }
+
+    private void push(Record record) throws InterruptedIOException {
+        if (!permits.tryAcquire()) {
+            // only the Event Dispatch Thread makes room in a full queue
+            if (SwingUtilities.isEventDispatchThread())
+                throw new IllegalStateException("Cannot wait for a full queue on the Event Dispatch Thread");
+
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Import abgebrochen.");
+            }
+        }
+
+        pushed.incrementAndGet();
+        Record previous = last.getAndSet(record);
+        previous.next = record;
+
+        scheduleDrain();
+    }
+
+    /**
+     * Wait until the records appended so far have been added to the car.
+     * Must not be called on the Event Dispatch Thread.
+     */
+    public void waitForDrain() throws InterruptedIOException {
+        if (SwingUtilities.isEventDispatchThread())
+            throw new IllegalStateException("Cannot wait for the Event Dispatch Thread on itself");
+
+        long target = pushed.get();
+        synchronized (this) {
+            try {
+                while (drained < target)
+                    wait();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Import abgebrochen.");
+            }
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true))
+            SwingUtilities.invokeLater(drainer);
+    }
+
+    /**
+     * Add the queued records to the car until the queue is empty or the
+     * frame time is over.
+     */
+    private void drain() {
+        long deadline = System.nanoTime() + frameTime * 1000000;
+        FuelCosts fuel = car.getFuelCosts();
+        MaintenanceCosts maintenance = car.getMaintenanceCosts();
+
+        int count = 0;
+        fuel.beginUpdate();
+        maintenance.beginUpdate();
+        try {
+            Record record;
+            while ((record = poll()) != null) {
+                if (record.maintenance != null)
+                    maintenance.addMaintenance(record.maintenance);
+                else
+                    fuel.addFilling(record.day, record.mileage, record.quantity, record.costs, record.currency);
+                record.maintenance = null;
+                count++;
+
+                if (count % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+                    break;
+            }
+        } finally {
+            maintenance.endUpdate();
+            fuel.endUpdate();
+
+            permits.release(count);
+            synchronized (this) {
+                drained += count;
+                notifyAll();
+            }
+
+            drainScheduled.set(false);
+            // a record pushed meanwhile may not have found a drain pending
+            if (first != last.get())
+                scheduleDrain();
+        }
+    }
+
+    /**
+     * @return the next record or <code>null</code> if there is none or
+     *         it is not linked yet
+     */
+    private Record poll() {
+        Record next = first.next;
+        if (next == null)
+            return null;
+
+        // the record stays at the front of the queue until the next one
+        first = next;
+        return next;
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * A filling or maintenance in the queue, which is linked to the
+     * record appended after it.
+     */
+    private static class Record {
+        volatile Record next;
+        int day, mileage;
+        double quantity, costs;
+        Currency currency;
+        Maintenance maintenance;
+    }
+
+    // --- member variables ------------------------------------
+
+    private Car car;
+    private final int capacity;
+    private volatile long frameTime = DEFAULT_FRAME_TIME;
+
+    // the drain owns the first record, producers swap in the last one
+    private Record first = new Record();
+    private final AtomicReference<Record> last = new AtomicReference<Record>(first);
+
+    private final Semaphore permits;
+    private final AtomicLong pushed = new AtomicLong();
+    private long drained = 0;
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final Runnable drainer = new Runnable() {
+        public void run() {
+            drain();
+        }
+    };
+}
@@ -0,0 +1,678 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.EpochDays;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Records the changes of a car in a journal next to its snapshot, so
+ * that saving a car appends the changes since the last save instead
+ * of writing the whole snapshot again.
+ * <p>
+ * The journal starts with a magic number, the version of the format
+ * and the length and CRC-32 of the snapshot it belongs to, a journal
+ * of another snapshot is ignored. Each record consists of its length,
+ * its type, the values and a CRC-32 of type and values. Fillings and
+ * maintenances are referred to by their index in the <code>FuelCosts</code>
+ * and <code>MaintenanceCosts</code>. Reading stops at the first
+ * incomplete or damaged record, which is what a crash while appending
+ * leaves behind, and the next append overwrites it.
+ * <p>
+ * Changes made in bulk updates like reading or importing aren't
+ * recorded, the next save writes a snapshot then. Once the journal
+ * grows beyond a quarter of the snapshot, a background thread writes
+ * the snapshot with the journal applied to a temporary file and moves
+ * it and a journal with the records appended meanwhile into place.
+ *
+ * @author Christian Pesch
+ */
+
+public class CarJournal {
+    public static final int MAGIC = 0x4B465A4A; // KFZJ
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".journal";
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    private static final int MINIMUM_COMPACTION_SIZE = 64 * 1024;
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte ADD_FILLING = 1;
+    private static final byte CHANGE_FILLING = 2;
+    private static final byte REMOVE_FILLING = 3;
+    private static final byte ADD_MAINTENANCE = 4;
+    private static final byte CHANGE_MAINTENANCE = 5;
+    private static final byte REMOVE_MAINTENANCE = 6;
+    private static final byte SET_CAR = 7;
+
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "CarJournal compactor");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    CarJournal(Car car) {
+        this.car = car;
+        fuelRecorder = new ListRecorder(car.getFuelCosts(), ADD_FILLING, CHANGE_FILLING, REMOVE_FILLING);
+        maintenanceRecorder = new ListRecorder(car.getMaintenanceCosts(), ADD_MAINTENANCE, CHANGE_MAINTENANCE, REMOVE_MAINTENANCE);
+        car.getFuelCosts().addListDataListener(fuelRecorder);
+        car.getMaintenanceCosts().addListDataListener(maintenanceRecorder);
+        car.getSignModel().addChangeListener(carRecorder);
+        car.getNameModel().addChangeListener(carRecorder);
+        car.getCurrencyModel().addChangeListener(carRecorder);
+    }
+
+    public static File getJournalFile(File file) {
+        return new File(file.getAbsolutePath() + EXTENSION);
+    }
+
+    private static File getTemporaryFile(File file) {
+        return new File(file.getAbsolutePath() + ".tmp");
+    }
+
+    /**
+     * @return the snapshot the journal belongs to or <code>null</code>
+     */
+    public synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the bytes of records in the journal file
+     */
+    public synchronized long getLength() {
+        return length > 0 ? length - HEADER_SIZE : 0;
+    }
+
+    /**
+     * @return true if the changes since the last save can be appended
+     *         to the journal of the file
+     */
+    public synchronized boolean canAppend(File file) {
+        return file.getAbsoluteFile().equals(this.file) && isRecording();
+    }
+
+    /**
+     * Stop recording until the journal is attached to a snapshot.
+     */
+    synchronized void detach() {
+        file = null;
+        recording = false;
+        generation++;
+        clearPending();
+    }
+
+    /**
+     * Record the changes from now on for a snapshot of the car which is
+     * captured now and written later.
+     *
+     * @return the generation to pass to {@link #endSnapshot}
+     */
+    synchronized int beginSnapshot() {
+        file = null;
+        recording = true;
+        clearPending();
+        return ++generation;
+    }
+
+    /**
+     * Attach the journal to a snapshot which has just been written,
+     * the journal of the file is removed. A snapshot which has been
+     * overtaken by a later one is ignored.
+     */
+    void endSnapshot(File file, int generation) throws IOException {
+        file = file.getAbsoluteFile();
+        long checksum = checksum(file);
+        synchronized (this) {
+            if (generation != this.generation)
+                return;
+
+            this.file = file;
+            baseLength = file.length();
+            baseChecksum = checksum;
+            length = 0;
+
+            File journalFile = getJournalFile(file);
+            if (journalFile.exists() && !journalFile.delete())
+                throw new IOException("Cannot delete " + journalFile);
+        }
+    }
+
+    /**
+     * Apply the journal of the snapshot, which has just been read into
+     * the car, and attach to it.
+     */
+    synchronized void replay(File file) throws IOException {
+        file = file.getAbsoluteFile();
+        long checksum = checksum(file);
+        File journalFile = recover(file, checksum);
+
+        long valid = 0;
+        if (journalFile.exists()) {
+            ByteBuffer buffer = load(journalFile);
+            if (isHeader(buffer, file.length(), checksum))
+                valid = apply(buffer, car, Long.MAX_VALUE);
+        }
+
+        this.file = file;
+        baseLength = file.length();
+        baseChecksum = checksum;
+        length = valid;
+        recording = true;
+        generation++;
+        clearPending();
+    }
+
+    /**
+     * Move a journal left behind by a compaction into place if it
+     * belongs to the snapshot.
+     */
+    private static File recover(File file, long checksum) throws IOException {
+        File journalFile = getJournalFile(file);
+        File temporaryFile = getTemporaryFile(journalFile);
+        if (temporaryFile.exists()) {
+            ByteBuffer buffer = load(temporaryFile);
+            if (isHeader(buffer, file.length(), checksum))
+                java.nio.file.Files.move(temporaryFile.toPath(), journalFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            else if (!temporaryFile.delete())
+                throw new IOException("Cannot delete " + temporaryFile);
+        }
+        return journalFile;
+    }
+
+    /**
+     * Take the changes since the last save to append them later.
+     *
+     * @return the records or <code>null</code> if the changes cannot be
+     *         appended to the journal of the file
+     */
+    synchronized byte[] takePending(File file) {
+        if (!canAppend(file))
+            return null;
+        byte[] records = pending.toByteArray();
+        pending.reset();
+        return records;
+    }
+
+    /**
+     * Append the records to the journal and force them to the disk.
+     * If this fails, the next save has to write a snapshot.
+     */
+    synchronized void append(byte[] records) throws IOException {
+        if (file == null)
+            throw new IOException("Journal is not attached");
+        if (records.length == 0)
+            return;
+
+        boolean appended = false;
+        try {
+            append(ByteBuffer.wrap(records));
+            appended = true;
+        } finally {
+            if (!appended)
+                snapshotNeeded();
+        }
+    }
+
+    private void append(ByteBuffer records) throws IOException {
+
+        File journalFile = getJournalFile(file);
+        FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (length == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(baseLength).putLong(baseChecksum);
+                header.flip();
+                channel.truncate(0);
+                write(channel, header, 0);
+                length = HEADER_SIZE;
+            }
+
+            // overwrite what an interrupted append may have left
+            channel.truncate(length);
+            int size = records.remaining();
+            write(channel, records, length);
+            channel.force(false);
+            length += size;
+        } finally {
+            channel.close();
+        }
+
+        if (!compacting && length > Math.max(MINIMUM_COMPACTION_SIZE, baseLength / 4)) {
+            compacting = true;
+            compactor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * Write the snapshot with the journal applied and start a new
+     * journal with the records appended in the meantime. The snapshot is
+     * read and written without holding the lock, so that appending has
+     * to wait only while the files are moved into place.
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            compactLocked();
+        }
+    }
+
+    private void compactLocked() throws IOException {
+        File file;
+        int generation;
+        long compacted;
+        synchronized (this) {
+            compacting = true;
+            file = this.file;
+            generation = this.generation;
+            compacted = length;
+        }
+
+        try {
+            if (file == null || compacted == 0)
+                return;
+
+            Car compactedCar = new Car(new ColumnarFillingStore());
+            CarSnapshot.read(file, compactedCar);
+            ByteBuffer buffer = load(getJournalFile(file));
+            if (apply(buffer, compactedCar, compacted) != compacted)
+                throw new IOException("Journal of " + file + " is damaged");
+            compactedCar.flush();
+
+            File snapshotFile = new File(file.getAbsolutePath() + ".compacted");
+            CarSnapshot.write(compactedCar, snapshotFile);
+            long snapshotLength = snapshotFile.length();
+            long snapshotChecksum = checksum(snapshotFile);
+
+            synchronized (this) {
+                if (generation != this.generation) {
+                    // a snapshot has been written meanwhile
+                    snapshotFile.delete();
+                    return;
+                }
+
+                // the records appended since the compaction started
+                File journalFile = getJournalFile(file);
+                File temporaryFile = getTemporaryFile(journalFile);
+                buffer = load(journalFile);
+                buffer.position((int) compacted);
+                buffer.limit((int) length);
+                FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                try {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(MAGIC).putInt(VERSION).putLong(snapshotLength).putLong(snapshotChecksum);
+                    header.flip();
+                    write(channel, header, 0);
+                    write(channel, buffer, HEADER_SIZE);
+                    channel.force(false);
+                } finally {
+                    channel.close();
+                }
+
+                // a crash between both moves is repaired by recover()
+                java.nio.file.Files.move(snapshotFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                try {
+                    moveJournal(temporaryFile, journalFile);
+                } catch (IOException e) {
+                    // the journal doesn't belong to the new snapshot, which
+                    // lacks the records appended since the compaction started:
+                    // saves queued meanwhile fail and the next one writes a snapshot
+                    detach();
+                    car.getSaver().failed();
+                    throw e;
+                }
+
+                long appended = length - compacted;
+                baseLength = snapshotLength;
+                baseChecksum = snapshotChecksum;
+                length = appended > 0 ? HEADER_SIZE + appended : 0;
+                if (length == 0 && !journalFile.delete())
+                    throw new IOException("Cannot delete " + journalFile);
+            }
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Move the journal written by a compaction into place.
+     */
+    void moveJournal(File temporaryFile, File journalFile) throws IOException {
+        java.nio.file.Files.move(temporaryFile.toPath(), journalFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copy the journal, a mapping would keep it from being truncated
+     * on some platforms.
+     */
+    private static ByteBuffer load(File file) throws IOException {
+        return ByteBuffer.wrap(java.nio.file.Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Compute the checksum of the snapshot while reading it, a mapping
+     * would keep it from being replaced by the next save on some
+     * platforms.
+     */
+    static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        return crc.getValue();
+    }
+
+    private static boolean isHeader(ByteBuffer buffer, long baseLength, long baseChecksum) {
+        return buffer.remaining() >= HEADER_SIZE &&
+                buffer.getInt(0) == MAGIC && buffer.getInt(4) <= VERSION &&
+                buffer.getLong(8) == baseLength && buffer.getLong(16) == baseChecksum;
+    }
+
+    // --- replaying -------------------------------------------
+
+    /**
+     * Apply the records of the journal up to the limit to the car.
+     *
+     * @return the length of the journal up to the first incomplete or
+     *         damaged record
+     */
+    private static long apply(ByteBuffer buffer, Car car, long limit) throws IOException {
+        FuelCosts fuel = car.getFuelCosts();
+        MaintenanceCosts maintenance = car.getMaintenanceCosts();
+        CRC32 crc = new CRC32();
+
+        int position = HEADER_SIZE;
+        fuel.beginUpdate();
+        maintenance.beginUpdate();
+        try {
+            while (position + 4 <= buffer.limit() && position < limit) {
+                int size = buffer.getInt(position);
+                int end = position + 4 + size + 4;
+                if (size <= 0 || end > buffer.limit() || end < 0)
+                    break;
+
+                ByteBuffer record = buffer.duplicate();
+                record.limit(position + 4 + size);
+                record.position(position + 4);
+                crc.reset();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != buffer.getInt(end - 4))
+                    break;
+
+                try {
+                    apply(record, car, fuel, maintenance);
+                } catch (BufferUnderflowException e) {
+                    throw new IOException("Invalid journal record at " + position);
+                } catch (IndexOutOfBoundsException e) {
+                    throw new IOException("Journal record at " + position + " doesn't match the snapshot");
+                }
+                position = end;
+            }
+        } finally {
+            maintenance.endUpdate();
+            fuel.endUpdate();
+        }
+        return position;
+    }
+
+    private static void apply(ByteBuffer record, Car car, FuelCosts fuel, MaintenanceCosts maintenance) throws IOException {
+        byte type = record.get();
+        switch (type) {
+            case ADD_FILLING:
+                fuel.addFilling(readFilling(record));
+                break;
+            case CHANGE_FILLING: {
+                Filling filling = (Filling) fuel.getElementAt(checkIndex(record.getInt(), fuel.getSize()));
+                filling.setFilling(readFilling(record));
+                fuel.changeFilling(filling);
+                break;
+            }
+            case REMOVE_FILLING:
+                fuel.removeFilling((Filling) fuel.getElementAt(checkIndex(record.getInt(), fuel.getSize())));
+                break;
+            case ADD_MAINTENANCE:
+                maintenance.addMaintenance(readMaintenance(record));
+                break;
+            case CHANGE_MAINTENANCE: {
+                Maintenance m = (Maintenance) maintenance.getElementAt(checkIndex(record.getInt(), maintenance.getSize()));
+                m.setMaintenance(readMaintenance(record));
+                maintenance.changeMaintenance(m);
+                break;
+            }
+            case REMOVE_MAINTENANCE:
+                maintenance.removeMaintenance((Maintenance) maintenance.getElementAt(checkIndex(record.getInt(), maintenance.getSize())));
+                break;
+            case SET_CAR:
+                car.getSignModel().setValue(readString(record));
+                car.getNameModel().setValue(readString(record));
+                car.getCurrencyModel().setValue(Currency.getCurrency(readString(record)));
+                break;
+            default:
+                throw new IOException("Unknown journal record " + type);
+        }
+    }
+
+    private static int checkIndex(int index, int size) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return index;
+    }
+
+    private static Filling readFilling(ByteBuffer record) {
+        int day = record.getInt();
+        int mileage = record.getInt();
+        double quantity = record.getDouble();
+        double costs = record.getDouble();
+        Currency currency = Currency.getCurrency(readString(record));
+        return new Filling(EpochDays.toCalendar(day), mileage, quantity, costs, currency);
+    }
+
+    private static Maintenance readMaintenance(ByteBuffer record) {
+        int day = record.getInt();
+        int mileage = record.getInt();
+        double costs = record.getDouble();
+        Currency currency = Currency.getCurrency(readString(record));
+        String title = readString(record);
+        String note = readString(record);
+        return new Maintenance(EpochDays.toCalendar(day), mileage, title, note, costs, currency);
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length == -1)
+            return null;
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    // --- recording -------------------------------------------
+
+    private void clearPending() {
+        pending.reset();
+        snapshotNeeded = false;
+    }
+
+    private boolean isRecording() {
+        return recording && !snapshotNeeded;
+    }
+
+    private synchronized void record(byte type, int index, Object value) {
+        if (!isRecording())
+            return;
+
+        try {
+            record.reset();
+            recordOutput.writeByte(type);
+            if (index != -1)
+                recordOutput.writeInt(index);
+            if (value instanceof Filling) {
+                Filling filling = (Filling) value;
+                recordOutput.writeInt(EpochDays.toEpochDay(filling.getDate()));
+                recordOutput.writeInt(filling.getMileage());
+                recordOutput.writeDouble(filling.getQuantity());
+                recordOutput.writeDouble(filling.getCosts());
+                writeString(filling.getCurrency().getName());
+            } else if (value instanceof Maintenance) {
+                Maintenance maintenance = (Maintenance) value;
+                recordOutput.writeInt(EpochDays.toEpochDay(maintenance.getDate()));
+                recordOutput.writeInt(maintenance.getMileage());
+                recordOutput.writeDouble(maintenance.getCosts());
+                writeString(maintenance.getCurrency().getName());
+                writeString(maintenance.getTitle());
+                writeString(maintenance.getNote());
+            } else if (value instanceof Car) {
+                writeString(car.getSign());
+                writeString(car.getName());
+                writeString(car.getCurrency().getName());
+            }
+            recordOutput.flush();
+
+            CRC32 crc = new CRC32();
+            crc.update(record.toByteArray());
+            pendingOutput.writeInt(record.size());
+            record.writeTo(pendingOutput);
+            pendingOutput.writeInt((int) crc.getValue());
+            pendingOutput.flush();
+        } catch (IOException e) {
+            // writing to memory doesn't fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeString(String string) throws IOException {
+        if (string == null) {
+            recordOutput.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF8);
+        recordOutput.writeInt(bytes.length);
+        recordOutput.write(bytes);
+    }
+
+    private synchronized void snapshotNeeded() {
+        if (isRecording()) {
+            snapshotNeeded = true;
+            pending.reset();
+        }
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * Records the changes of single fillings or maintenances, changes
+     * of the whole list need a snapshot. Showing the fillings in another
+     * currency doesn't change them.
+     */
+    private class ListRecorder implements ListDataListener {
+        public ListRecorder(Object list, byte add, byte change, byte remove) {
+            this.list = list;
+            this.add = add;
+            this.change = change;
+            this.remove = remove;
+        }
+
+        public void intervalAdded(ListDataEvent e) {
+            if (e.getSource() == list || e.getIndex0() == -1)
+                snapshotNeeded();
+            else
+                record(add, -1, e.getSource());
+        }
+
+        public void contentsChanged(ListDataEvent e) {
+            if (e.getSource() == FuelCosts.CURRENCIES)
+                return;
+            if (e.getSource() == list || e.getIndex0() == -1)
+                snapshotNeeded();
+            else
+                record(change, e.getIndex0(), e.getSource());
+        }
+
+        public void intervalRemoved(ListDataEvent e) {
+            if (e.getSource() == list || e.getIndex0() == -1)
+                snapshotNeeded();
+            else
+                record(remove, e.getIndex0(), null);
+        }
+
+        private Object list;
+        private byte add, change, remove;
+    }
+
+    // --- member variables ------------------------------------
+
+    private Car car;
+    private File file;
+    private long baseLength, baseChecksum;
+    private long length;
+    private boolean recording = false;
+    private boolean snapshotNeeded = false;
+    private int generation = 0;
+    private boolean compacting = false;
+    private final Object compactionLock = new Object();
+
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private DataOutputStream pendingOutput = new DataOutputStream(pending);
+    private ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private DataOutputStream recordOutput = new DataOutputStream(record);
+
+    private ListDataListener fuelRecorder, maintenanceRecorder;
+    private ChangeListener carRecorder = new ChangeListener() {
+        public void stateChanged(ChangeEvent e) {
+            record(SET_CAR, -1, car);
+        }
+    };
+}
@@ -0,0 +1,93 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Reads a car on a worker thread.
+ * <p>
+ * While reading, the <code>progress</code> property is updated with the
+ * percentage of the file read and the <code>records</code> property with
+ * the number of records read. When the car is complete, it is handed to
+ * {@link #loaded(Car)} on the Event Dispatch Thread.
+ *
+ * @author Christian Pesch
+ */
+
+public class CarLoader extends SwingWorker<Car, Void> {
+    public static final String RECORDS_PROPERTY = "records";
+
+    public CarLoader(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    protected Car doInBackground() throws Exception {
+        Car car = new Car();
+        car.read(file, new ReadMonitor() {
+            public void progress(long position, long length, int records) {
+                setProgress(length > 0 ? (int) (position * 100 / length) : 100);
+
+                int previous = CarLoader.this.records;
+                CarLoader.this.records = records;
+                firePropertyChange(RECORDS_PROPERTY, previous, records);
+            }
+
+            public boolean isCanceled() {
+                return isCancelled();
+            }
+        });
+        return car;
+    }
+
+    protected void done() {
+        try {
+            loaded(get());
+        } catch (CancellationException e) {
+            canceled();
+        } catch (InterruptedException e) {
+            canceled();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            failed(cause instanceof IOException ? (IOException) cause : new IOException(cause.toString()));
+        }
+    }
+
+    /**
+     * Called on the Event Dispatch Thread with the car read.
+     */
+    protected void loaded(Car car) {
+    }
+
+    /**
+     * Called on the Event Dispatch Thread if the car could not be read.
+     */
+    protected void failed(IOException e) {
+        e.printStackTrace();
+    }
+
+    /**
+     * Called on the Event Dispatch Thread if loading was canceled.
+     */
+    protected void canceled() {
+    }
+
+    // --- member variables ------------------------------------
+
+    private File file;
+    private volatile int records = 0;
+}
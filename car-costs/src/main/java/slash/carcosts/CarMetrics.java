@@ -0,0 +1,150 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the events and measures the updates of the models of a car
+ * and publishes them as an MBean named
+ * <code>slash.carcosts:type=Car,id=&lt;n&gt;</code> while the car is
+ * open, so that they can be watched with JConsole or JDK Mission
+ * Control.
+ *
+ * @author Christian Pesch
+ */
+
+public class CarMetrics implements CarMetricsMBean {
+    // a maintenance with its models, calendar, listeners and aggregates
+    private static final int MAINTENANCE_HEAP_SIZE = 1260;
+
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    CarMetrics(Car car) {
+        this.car = car;
+        car.getFuelCosts().addListDataListener(new EventCounter(fillingEvents));
+        car.getMaintenanceCosts().addListDataListener(new EventCounter(maintenanceEvents));
+    }
+
+    public String getName() {
+        return car.getName();
+    }
+
+    public int getFillingCount() {
+        return car.getFuelCosts().getFillingStore().size();
+    }
+
+    public int getMaintenanceCount() {
+        return car.getMaintenanceCosts().getMaintenances().size();
+    }
+
+    public long getEstimatedHeapBytes() {
+        return car.getFuelCosts().estimateHeapSize() +
+                (long) getMaintenanceCount() * MAINTENANCE_HEAP_SIZE;
+    }
+
+    public double getLastUpdateModelsMillis() {
+        return lastUpdateModelsNanos / 1000000.0;
+    }
+
+    public long getUpdateModelsCount() {
+        return updateModels.get();
+    }
+
+    public long getFillingEventCount() {
+        return fillingEvents.get();
+    }
+
+    public long getMaintenanceEventCount() {
+        return maintenanceEvents.get();
+    }
+
+    void updatedModels(long nanos) {
+        lastUpdateModelsNanos = nanos;
+        updateModels.incrementAndGet();
+    }
+
+    /**
+     * Publish the metrics in the platform MBean server, failures are
+     * reported but don't keep the car from being used.
+     */
+    public synchronized void register() {
+        if (objectName != null)
+            return;
+
+        try {
+            ObjectName name = new ObjectName("slash.carcosts:type=Car,id=" + ids.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null)
+            return;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        objectName = null;
+    }
+
+    /**
+     * @return the name the metrics are published with or
+     *         <code>null</code> if they aren't
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    // --- inner classes ---------------------------------------
+
+    private static class EventCounter implements ListDataListener {
+        public EventCounter(AtomicLong count) {
+            this.count = count;
+        }
+
+        public void contentsChanged(ListDataEvent e) {
+            count.incrementAndGet();
+        }
+
+        public void intervalAdded(ListDataEvent e) {
+            count.incrementAndGet();
+        }
+
+        public void intervalRemoved(ListDataEvent e) {
+            count.incrementAndGet();
+        }
+
+        private AtomicLong count;
+    }
+
+    // --- member variables ------------------------------------
+
+    private Car car;
+    private ObjectName objectName;
+
+    private final AtomicLong fillingEvents = new AtomicLong();
+    private final AtomicLong maintenanceEvents = new AtomicLong();
+    private final AtomicLong updateModels = new AtomicLong();
+    private volatile long lastUpdateModelsNanos = 0;
+}
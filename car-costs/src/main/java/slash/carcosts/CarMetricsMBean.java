@@ -0,0 +1,51 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+/**
+ * The figures of an open car which are published via JMX.
+ *
+ * @author Christian Pesch
+ * @see CarMetrics
+ */
+
+public interface CarMetricsMBean {
+
+    String getName();
+
+    int getFillingCount();
+
+    int getMaintenanceCount();
+
+    /**
+     * @return the estimated bytes of heap which the fillings and
+     *         maintenances occupy
+     */
+    long getEstimatedHeapBytes();
+
+    /**
+     * @return the milliseconds of the last update of the models
+     */
+    double getLastUpdateModelsMillis();
+
+    /**
+     * @return the number of updates of the models
+     */
+    long getUpdateModelsCount();
+
+    /**
+     * @return the number of events of the fillings
+     */
+    long getFillingEventCount();
+
+    /**
+     * @return the number of events of the maintenances
+     */
+    long getMaintenanceEventCount();
+}
@@ -0,0 +1,259 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves a car on a worker thread. The changes to save are taken from
+ * the car on the calling thread, which is usually the Event Dispatch
+ * Thread: the records of the journal if they can be appended to it,
+ * otherwise a copy of the values for a snapshot. Writing them to the
+ * disk happens on the worker thread, one save after the other.
+ * <p>
+ * With an autosave file, the car is saved when it has been changed,
+ * at most once per autosave delay.
+ *
+ * @author Christian Pesch
+ * @see CarJournal
+ * @see CarSnapshot
+ */
+
+public class CarSaver {
+    public static final long DEFAULT_AUTOSAVE_DELAY = 2000;
+
+    // don't ask for the event dispatch thread, which starts a toolkit
+    private static final boolean HEADLESS = Boolean.getBoolean("java.awt.headless");
+
+    CarSaver(Car car) {
+        this.car = car;
+
+        autosaveTimer = new Timer((int) DEFAULT_AUTOSAVE_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                autosave();
+            }
+        });
+        autosaveTimer.setRepeats(false);
+
+        car.getSaveModel().addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+                if (CarSaver.this.car.getSaveModel().getState() && getAutosaveFile() != null && !autosaveTimer.isRunning())
+                    autosaveTimer.start();
+            }
+        });
+    }
+
+    /**
+     * Take the changes of the car and write them to the file on the
+     * worker thread.
+     *
+     * @return the future to wait for the save and its failure
+     */
+    public Future<?> saveLater(File file) {
+        return saveLater(file, false);
+    }
+
+    /**
+     * Save the car to the file and wait for it.
+     */
+    public void save(File file) throws IOException {
+        waitFor(saveLater(file, false));
+    }
+
+    /**
+     * Write a snapshot of the car to the file and wait for it.
+     */
+    public void writeSnapshot(File file) throws IOException {
+        waitFor(saveLater(file, true));
+    }
+
+    private Future<?> saveLater(final File file, boolean snapshot) {
+        car.flush();
+        final CarJournal journal = car.getJournal();
+
+        SaveTask task;
+        final byte[] records = snapshot ? null : journal.takePending(file);
+        if (records != null) {
+            task = new SaveTask(file, CarEvents.JOURNAL) {
+                protected void write() throws IOException {
+                    journal.append(records);
+                }
+            };
+        } else {
+            final int generation = journal.beginSnapshot();
+            final CarSnapshot capture = CarSnapshot.capture(car);
+            task = new SaveTask(file, CarEvents.SNAPSHOT) {
+                protected void write() throws IOException {
+                    capture.write(file);
+                    journal.endSnapshot(file, generation);
+                }
+            };
+        }
+        car.getSaveModel().setState(false);
+
+        return getExecutor().submit(task);
+    }
+
+    /**
+     * Mark the car as changed again, so that the changes are saved
+     * with the next save.
+     */
+    void failed() {
+        if (HEADLESS)
+            car.getSaveModel().setState(true);
+        else
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    car.getSaveModel().setState(true);
+                }
+            });
+    }
+
+    /**
+     * Wait until the saves which have been started are written.
+     */
+    public void waitForSaves() throws IOException {
+        waitFor(getExecutor().submit(new Runnable() {
+            public void run() {
+            }
+        }));
+    }
+
+    private static void waitFor(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Speichern unterbrochen.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            // a single thread which ends when there is nothing to save
+            executor = new ThreadPoolExecutor(0, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "CarSaver " + car.getName());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return executor;
+    }
+
+    private void autosave() {
+        File file = getAutosaveFile();
+        if (file == null || !car.getSaveModel().getState())
+            return;
+
+        // don't queue saves faster than they are written
+        if (lastAutosave != null && !lastAutosave.isDone()) {
+            autosaveTimer.restart();
+            return;
+        }
+        lastAutosave = saveLater(file);
+    }
+
+    /**
+     * @return the file which the car is saved to when it is changed or
+     *         <code>null</code> if autosave is disabled
+     */
+    public synchronized File getAutosaveFile() {
+        return autosaveFile;
+    }
+
+    public synchronized void setAutosaveFile(File autosaveFile) {
+        this.autosaveFile = autosaveFile;
+        if (autosaveFile == null)
+            autosaveTimer.stop();
+        else if (car.getSaveModel().getState())
+            autosaveTimer.start();
+    }
+
+    /**
+     * @return the minimum milliseconds between two autosaves
+     */
+    public long getAutosaveDelay() {
+        return autosaveTimer.getInitialDelay();
+    }
+
+    public void setAutosaveDelay(long autosaveDelay) {
+        autosaveTimer.setInitialDelay((int) autosaveDelay);
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * Writes the changes taken from the car on the worker thread and
+     * marks the car as changed again if this fails.
+     */
+    private abstract class SaveTask implements Callable<Object> {
+        public SaveTask(File file, String format) {
+            this.file = file;
+            this.format = format;
+            this.fillings = car.getFuelCosts().getSize();
+            this.maintenances = car.getMaintenanceCosts().getSize();
+        }
+
+        public Object call() throws IOException {
+            Object event = CarEvents.beginWrite();
+            try {
+                write();
+            } catch (IOException e) {
+                e.printStackTrace();
+                failed();
+                throw e;
+            } catch (RuntimeException e) {
+                failed();
+                throw e;
+            }
+
+            CarEvents.commitWrite(event, file, format, fillings, maintenances);
+            return null;
+        }
+
+        protected abstract void write() throws IOException;
+
+        private File file;
+        private String format;
+        private int fillings, maintenances;
+    }
+
+    // --- member variables ------------------------------------
+
+    private Car car;
+    private ThreadPoolExecutor executor;
+    private Timer autosaveTimer;
+    private Future<?> lastAutosave;
+    private File autosaveFile;
+}
@@ -0,0 +1,328 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.EpochDays;
+import slash.util.Files;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes a car in the binary snapshot format.
+ * <p>
+ * A snapshot starts with a magic number and the version of the format,
+ * followed by the number of records, a string table with the texts of
+ * the car and the maintenances, a dictionary of currencies and the
+ * fillings and maintenances as records of a fixed width. All numbers
+ * are big endian. Texts and currencies are referred to by their index,
+ * -1 stands for <code>null</code>.
+ *
+ * @author Christian Pesch
+ */
+
+public class CarSnapshot {
+    public static final int MAGIC = 0x4B465A31; // KFZ1
+    public static final int VERSION = 1;
+
+    static final int FILLING_RECORD_SIZE = 4 + 4 + 8 + 8 + 4;
+    static final int MAINTENANCE_RECORD_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+
+    private static final int PROGRESS_INTERVAL = 4096;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * @return true if the file starts with the magic number of a snapshot
+     */
+    public static boolean isSnapshot(File file) throws IOException {
+        if (file.length() < 4)
+            return false;
+
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            return input.readInt() == MAGIC;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Write the car into the file. It is written to a temporary file
+     * first, forced to the disk and then renamed, so that a crash
+     * while writing leaves the previous file intact.
+     */
+    public static void write(Car car, File file) throws IOException {
+        capture(car).write(file);
+    }
+
+    /**
+     * Copy the values of the car, which is cheap compared to writing
+     * them, so that they can be written on another thread while the car
+     * is changed. The dates are taken from the sort keys, which saves
+     * creating a <code>Calendar</code> per filling.
+     */
+    public static CarSnapshot capture(Car car) {
+        return new CarSnapshot(car);
+    }
+
+    private CarSnapshot(Car car) {
+        List<Filling> fillings = car.getFuelCosts().getFillings();
+        List<Maintenance> maintenances = car.getMaintenanceCosts().getMaintenances();
+
+        sign = strings.encode(car.getSign());
+        name = strings.encode(car.getName());
+        currency = currencies.encode(car.getCurrency());
+
+        int fillingCount = fillings.size();
+        fillingDays = new int[fillingCount];
+        fillingMileages = new int[fillingCount];
+        fillingQuantities = new double[fillingCount];
+        fillingCosts = new double[fillingCount];
+        fillingCurrencies = new int[fillingCount];
+        for (int i = 0; i < fillingCount; i++) {
+            Filling filling = fillings.get(i);
+            fillingDays[i] = Filling.toEpochDay(filling.getSortKey());
+            fillingMileages[i] = filling.getMileage();
+            fillingQuantities[i] = filling.getQuantity();
+            fillingCosts[i] = filling.getCosts();
+            fillingCurrencies[i] = currencies.encode(filling.getCurrency());
+        }
+
+        int maintenanceCount = maintenances.size();
+        maintenanceDays = new int[maintenanceCount];
+        maintenanceMileages = new int[maintenanceCount];
+        maintenanceCosts = new double[maintenanceCount];
+        maintenanceCurrencies = new int[maintenanceCount];
+        maintenanceTitles = new int[maintenanceCount];
+        maintenanceNotes = new int[maintenanceCount];
+        for (int i = 0; i < maintenanceCount; i++) {
+            Maintenance maintenance = maintenances.get(i);
+            maintenanceDays[i] = Filling.toEpochDay(maintenance.getSortKey());
+            maintenanceMileages[i] = maintenance.getMileage();
+            maintenanceCosts[i] = maintenance.getCosts();
+            maintenanceCurrencies[i] = currencies.encode(maintenance.getCurrency());
+            maintenanceTitles[i] = strings.encode(maintenance.getTitle());
+            maintenanceNotes[i] = strings.encode(maintenance.getNote());
+        }
+
+        for (Currency c : currencies.values)
+            strings.encode(c.getName());
+    }
+
+    /**
+     * Write the captured values into the file.
+     *
+     * @see #write(Car, File)
+     */
+    public void write(File file) throws IOException {
+        File temporaryFile = new File(file.getAbsolutePath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temporaryFile);
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            write(output);
+            output.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            stream.close();
+            temporaryFile.delete();
+            throw e;
+        }
+        stream.close();
+
+        java.nio.file.Files.move(temporaryFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(strings.values.size());
+        output.writeInt(currencies.values.size());
+        output.writeInt(fillingDays.length);
+        output.writeInt(maintenanceDays.length);
+
+        for (String string : strings.values) {
+            byte[] bytes = string.getBytes(UTF8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        for (Currency c : currencies.values)
+            output.writeInt(strings.encode(c.getName()));
+
+        output.writeInt(sign);
+        output.writeInt(name);
+        output.writeInt(currency);
+
+        for (int i = 0; i < fillingDays.length; i++) {
+            output.writeInt(fillingDays[i]);
+            output.writeInt(fillingMileages[i]);
+            output.writeDouble(fillingQuantities[i]);
+            output.writeDouble(fillingCosts[i]);
+            output.writeInt(fillingCurrencies[i]);
+        }
+
+        for (int i = 0; i < maintenanceDays.length; i++) {
+            output.writeInt(maintenanceDays[i]);
+            output.writeInt(maintenanceMileages[i]);
+            output.writeDouble(maintenanceCosts[i]);
+            output.writeInt(maintenanceCurrencies[i]);
+            output.writeInt(maintenanceTitles[i]);
+            output.writeInt(maintenanceNotes[i]);
+        }
+    }
+
+    /**
+     * Read the file into the car.
+     */
+    public static void read(File file, Car car) throws IOException {
+        read(file, car, null);
+    }
+
+    /**
+     * Read the file into the car and report the progress to the
+     * monitor, which may be <code>null</code>.
+     */
+    public static void read(File file, Car car, ReadMonitor monitor) throws IOException {
+        ByteBuffer buffer = Files.load(file);
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("Dateikennung nicht gefunden.");
+            int version = buffer.getInt();
+            if (version > VERSION)
+                throw new IOException("Unbekannte Version " + version + " der Datei.");
+
+            int stringCount = buffer.getInt();
+            int currencyCount = buffer.getInt();
+            int fillingCount = buffer.getInt();
+            int maintenanceCount = buffer.getInt();
+            if (stringCount < 0 || currencyCount < 0 || fillingCount < 0 || maintenanceCount < 0 ||
+                    (long) fillingCount * FILLING_RECORD_SIZE +
+                            (long) maintenanceCount * MAINTENANCE_RECORD_SIZE > buffer.remaining())
+                throw new IOException("Dateikopf nicht korrekt.");
+
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, UTF8);
+            }
+
+            Currency[] currencies = new Currency[currencyCount];
+            for (int i = 0; i < currencyCount; i++)
+                currencies[i] = Currency.getCurrency(decode(strings, buffer.getInt()));
+
+            car.getSignModel().setValue(decode(strings, buffer.getInt()));
+            car.getNameModel().setValue(decode(strings, buffer.getInt()));
+            car.getCurrencyModel().setValue(decode(currencies, buffer.getInt()));
+
+            FuelCosts fuel = car.getFuelCosts();
+            MaintenanceCosts maintenance = car.getMaintenanceCosts();
+            fuel.beginUpdate();
+            maintenance.beginUpdate();
+            try {
+                fuel.removeAllFillings();
+                for (int i = 0; i < fillingCount; i++) {
+                    int day = buffer.getInt();
+                    int mileage = buffer.getInt();
+                    double quantity = buffer.getDouble();
+                    double costs = buffer.getDouble();
+                    Currency currency = decode(currencies, buffer.getInt());
+                    fuel.addFilling(day, mileage, quantity, costs, currency);
+                    if ((i + 1) % PROGRESS_INTERVAL == 0)
+                        report(monitor, buffer, i + 1);
+                }
+
+                maintenance.removeAllMaintenances();
+                for (int i = 0; i < maintenanceCount; i++) {
+                    int day = buffer.getInt();
+                    int mileage = buffer.getInt();
+                    double costs = buffer.getDouble();
+                    Currency currency = decode(currencies, buffer.getInt());
+                    String title = decode(strings, buffer.getInt());
+                    String note = decode(strings, buffer.getInt());
+                    maintenance.addMaintenance(new Maintenance(EpochDays.toCalendar(day), mileage,
+                            title, note, costs, currency));
+                    if ((i + 1) % PROGRESS_INTERVAL == 0)
+                        report(monitor, buffer, fillingCount + i + 1);
+                }
+                report(monitor, buffer, fillingCount + maintenanceCount);
+            } finally {
+                maintenance.endUpdate();
+                fuel.endUpdate();
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Datei ist unvollständig.");
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Datei ist beschädigt.");
+        } catch (NegativeArraySizeException e) {
+            throw new IOException("Datei ist beschädigt.");
+        }
+    }
+
+    private static void report(ReadMonitor monitor, ByteBuffer buffer, int records) throws InterruptedIOException {
+        if (monitor == null)
+            return;
+        if (monitor.isCanceled())
+            throw new InterruptedIOException("Laden abgebrochen.");
+        monitor.progress(buffer.position(), buffer.limit(), records);
+    }
+
+    private static <T> T decode(T[] values, int index) {
+        return index == -1 ? null : values[index];
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * Assigns an index to each distinct value in the order of appearance.
+     */
+    private static class Dictionary<T> {
+        public int encode(T value) {
+            if (value == null)
+                return -1;
+
+            Integer index = indices.get(value);
+            if (index == null) {
+                index = values.size();
+                indices.put(value, index);
+                values.add(value);
+            }
+            return index;
+        }
+
+        private Map<T, Integer> indices = new HashMap<T, Integer>();
+        private List<T> values = new ArrayList<T>();
+    }
+
+    // --- member variables ------------------------------------
+
+    private Dictionary<String> strings = new Dictionary<String>();
+    private Dictionary<Currency> currencies = new Dictionary<Currency>();
+    private int sign, name, currency;
+
+    private int[] fillingDays, fillingMileages, fillingCurrencies;
+    private double[] fillingQuantities, fillingCosts;
+
+    private int[] maintenanceDays, maintenanceMileages, maintenanceCurrencies, maintenanceTitles, maintenanceNotes;
+    private double[] maintenanceCosts;
+}
@@ -0,0 +1,163 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import java.util.Calendar;
+
+/**
+ * The figures of a car or a fleet of cars. All costs are in EUR.
+ * <p>
+ * The statistics of several cars are combined with {@link #plus}, then
+ * the averages refer to the kilometers and years of all cars.
+ *
+ * @author Christian Pesch
+ */
+
+public class CarStatistics {
+    public static final CarStatistics EMPTY = new CarStatistics(0, 0, 0.0, 0.0, 0.0, 0.0);
+
+    public CarStatistics(int cars, long mileage, double fuelQuantity, double fuelCosts,
+                         double maintenanceCosts, double years) {
+        this.cars = cars;
+        this.mileage = mileage;
+        this.fuelQuantity = fuelQuantity;
+        this.fuelCosts = fuelCosts;
+        this.maintenanceCosts = maintenanceCosts;
+        this.years = years;
+    }
+
+    /**
+     * Calculate the statistics of one car.
+     */
+    public CarStatistics(FuelCosts fuel, MaintenanceCosts maintenance, Calendar earliest, Calendar latest) {
+        this(1, fuel.getMaximumMileage() - fuel.getMinimumMileage(), fuel.getTotalQuantity(),
+                fuel.getTotalCosts(), maintenance.getTotalCosts(), getYears(earliest, latest));
+    }
+
+    /**
+     * @return the years between the dates with 365 days per year and 30 days per month
+     */
+    public static double getYears(Calendar earliest, Calendar latest) {
+        long latestDays =
+                latest.get(Calendar.YEAR) * 365 +
+                        (latest.get(Calendar.MONTH) + 1) * 30 +
+                        latest.get(Calendar.DAY_OF_MONTH);
+
+        long earliestDays =
+                earliest.get(Calendar.YEAR) * 365 +
+                        (earliest.get(Calendar.MONTH) + 1) * 30 +
+                        earliest.get(Calendar.DAY_OF_MONTH);
+
+        return (latestDays - earliestDays) / 365.0;
+    }
+
+    /**
+     * Combine the statistics with the statistics of other cars.
+     */
+    public CarStatistics plus(CarStatistics other) {
+        return new CarStatistics(cars + other.cars, mileage + other.mileage,
+                fuelQuantity + other.fuelQuantity, fuelCosts + other.fuelCosts,
+                maintenanceCosts + other.maintenanceCosts, years + other.years);
+    }
+
+    public int getCars() {
+        return cars;
+    }
+
+    /**
+     * @return the kilometers driven between the first and the last filling
+     */
+    public long getMileage() {
+        return mileage;
+    }
+
+    public double getFuelQuantity() {
+        return fuelQuantity;
+    }
+
+    public double getTotalFuelCosts() {
+        return fuelCosts;
+    }
+
+    public double getTotalMaintenanceCosts() {
+        return maintenanceCosts;
+    }
+
+    public double getTotalCosts() {
+        return fuelCosts + maintenanceCosts;
+    }
+
+    public double getYears() {
+        return years;
+    }
+
+    /**
+     * @return the fuel costs per 100 km
+     */
+    public double getAverageFuelCosts() {
+        return fuelCosts /
+                mileage *
+                100.0;
+    }
+
+    /**
+     * @return the maintenance costs per 100 km
+     */
+    public double getAverageMaintenanceCosts() {
+        return maintenanceCosts /
+                mileage *
+                100.0;
+    }
+
+    /**
+     * @return the costs per 100 km
+     */
+    public double getAverageTotalCosts() {
+        return getTotalCosts() /
+                mileage *
+                100.0;
+    }
+
+    /**
+     * @return the kilometers per year
+     */
+    public double getAverageMileage() {
+        return mileage / years;
+    }
+
+    /**
+     * @return the fuel quantity per 100 km
+     */
+    public double getAverageQuantity() {
+        return fuelQuantity /
+                mileage *
+                100.0;
+    }
+
+    /**
+     * @return the fuel costs per liter
+     */
+    public double getAverageFuelQuantityCosts() {
+        return fuelCosts / fuelQuantity;
+    }
+
+    public String toString() {
+        return "CarStatistics[cars=" + cars + ", mileage=" + mileage + ", fuelQuantity=" + fuelQuantity +
+                ", fuelCosts=" + fuelCosts + ", maintenanceCosts=" + maintenanceCosts + ", years=" + years + "]";
+    }
+
+    // --- member variables ------------------------------------
+
+    private final int cars;
+    private final long mileage;
+    private final double fuelQuantity;
+    private final double fuelCosts;
+    private final double maintenanceCosts;
+    private final double years;
+}
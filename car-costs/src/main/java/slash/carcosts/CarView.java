@@ -20,10 +20,14 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.prefs.Preferences;
 
 import static javax.swing.JFileChooser.APPROVE_OPTION;
@@ -69,6 +73,9 @@ public class CarView extends ManagedJPanel {
         GridBagHelper.constrain(actionPanel, listenerMgr.createJButton("edit-maintenance-costs"), 1, 0, 1, 1,
                 GridBagConstraints.HORIZONTAL, GridBagConstraints.EAST,
                 1.0, 0.0, 0, 0, 0, 0);
+        GridBagHelper.constrain(actionPanel, listenerMgr.createJButton("show-period-costs"), 2, 0, 1, 1,
+                GridBagConstraints.HORIZONTAL, GridBagConstraints.EAST,
+                1.0, 0.0, 0, 0, 0, 0);
 
         // set layout for this panel
         this.setLayout(gridbag);
@@ -82,6 +89,19 @@ public class CarView extends ManagedJPanel {
                 GridBagConstraints.HORIZONTAL, GridBagConstraints.CENTER,
                 1.0, 0.0, 0, 0, 0, 0);
 
+        progressBar.setStringPainted(true);
+        progressPanel.setLayout(gridbag);
+        GridBagHelper.constrain(progressPanel, progressBar, 0, 0, 1, 1,
+                GridBagConstraints.HORIZONTAL, GridBagConstraints.WEST,
+                1.0, 0.0, 0, 0, 0, 0);
+        GridBagHelper.constrain(progressPanel, listenerMgr.createJButton("cancel-load"), 1, 0, 1, 1,
+                GridBagConstraints.NONE, GridBagConstraints.EAST,
+                0.0, 0.0, 0, 0, 0, 0);
+        progressPanel.setVisible(false);
+        GridBagHelper.constrain(this, progressPanel, 0, 4, 1, 1,
+                GridBagConstraints.HORIZONTAL, GridBagConstraints.CENTER,
+                1.0, 0.0, 0, 0, 0, 0);
+
         // install window menu updater
         new WindowMenuUpdater(CarCosts.getFrameManager());
     }
@@ -96,9 +116,13 @@ public class CarView extends ManagedJPanel {
             actions = new Action[]{
                     new EditFuelCostsAction(),
                     new EditMaintenanceCostsAction(),
+                    new ShowPeriodCostsAction(),
                     new LoadCarAction(),
                     new SaveAsCarAction(),
-                    new SaveCarAction()
+                    new SaveCarAction(),
+                    new ExportCarAction(),
+                    new ImportCarAction(),
+                    new CancelLoadAction()
             };
         }
         return actions;
@@ -132,9 +156,30 @@ public class CarView extends ManagedJPanel {
         frame.setDocumentName(CarCosts.getBundle().getString("unnamed-car-title"));
     }
 
+    /**
+     * Autosave only replaces snapshots, an Amiga CarCosts file is
+     * replaced when the user saves it.
+     *
+     * @return the file or <code>null</code> if it isn't a snapshot
+     */
+    private static File getAutosaveFile(File file) {
+        try {
+            return file != null && CarSnapshot.isSnapshot(file) ? file : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     public void setCar(File newFile, Car newCar) {
+        if (car != null) {
+            car.getSaver().setAutosaveFile(null);
+            car.getMetrics().unregister();
+        }
+
         this.file = newFile;
         this.car = newCar;
+        car.getSaver().setAutosaveFile(getAutosaveFile(file));
+        car.getMetrics().register();
 
         pane.setCar(car);
 
@@ -147,6 +192,70 @@ public class CarView extends ManagedJPanel {
         saveModelListener.setDelegate(car.getSaveModel());
     }
 
+    /**
+     * Read the car from the file on a worker thread and show it
+     * when it is complete. A running load is canceled.
+     */
+    public void load(final File file) {
+        cancelLoad();
+
+        loader = new CarLoader(file) {
+            protected void loaded(Car car) {
+                setCar(file, car);
+            }
+
+            protected void failed(IOException e) {
+                super.failed(e);
+
+                JOptionPane.showMessageDialog(null, Util.formatString(CarCosts.getBundle().getString("load-car-failed"),
+                        new Object[]{file.getName(), e}),
+                        CarCosts.getBundle().getString("carcosts-title"),
+                        ERROR_MESSAGE);
+            }
+
+            protected void done() {
+                super.done();
+
+                if (loader == this) {
+                    loader = null;
+                    progressPanel.setVisible(false);
+                    revalidate();
+                }
+            }
+        };
+        loader.addPropertyChangeListener(new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent e) {
+                if (e.getSource() != loader)
+                    return;
+
+                if ("progress".equals(e.getPropertyName()))
+                    progressBar.setValue((Integer) e.getNewValue());
+                else if (CarLoader.RECORDS_PROPERTY.equals(e.getPropertyName()))
+                    progressBar.setString(Util.formatString(CarCosts.getBundle().getString("load-car-progress"),
+                            new Object[]{file.getName(), e.getNewValue()}));
+            }
+        });
+
+        progressBar.setValue(0);
+        progressBar.setString(file.getName());
+        progressPanel.setVisible(true);
+        revalidate();
+
+        loader.execute();
+    }
+
+    /**
+     * Cancel a running load.
+     */
+    public void cancelLoad() {
+        if (loader != null) {
+            loader.cancel(false);
+            loader = null;
+            progressPanel.setVisible(false);
+            revalidate();
+        }
+    }
+
     public boolean isSaveNeeded() {
         return saveModel.getState();
     }
@@ -161,6 +270,8 @@ public class CarView extends ManagedJPanel {
         menu.addSeparator();
         menu.add(listenerMgr.createJMenuItem("save-car"));
         menu.add(listenerMgr.createJMenuItem("save-as-car"));
+        menu.add(listenerMgr.createJMenuItem("export-car"));
+        menu.add(listenerMgr.createJMenuItem("import-car"));
         menu.addSeparator();
         menu.add(listenerMgr.createJMenuItem("exit"));
         menuBar.add(menu);
@@ -169,6 +280,8 @@ public class CarView extends ManagedJPanel {
         menu = listenerMgr.createJMenu("edit-menu");
         menu.add(listenerMgr.createJMenuItem("edit-fuel-costs"));
         menu.add(listenerMgr.createJMenuItem("edit-maintenance-costs"));
+        menu.addSeparator();
+        menu.add(listenerMgr.createJMenuItem("show-period-costs"));
         menuBar.add(menu);
 
         // view menu
@@ -678,28 +791,18 @@ public class CarView extends ManagedJPanel {
                 File file = c.getSelectedFile();
                 setLastDirectoryPreference(file);
 
-                try {
-                    Car car = new Car(file);
-                    setCar(file, car);
-                } catch (IOException ie) {
-                    ie.printStackTrace();
-
-                    JOptionPane.showMessageDialog(null, Util.formatString(CarCosts.getBundle().getString("load-car-failed"),
-                            new Object[]{file.getName(), ie}),
-                            CarCosts.getBundle().getString("carcosts-title"),
-                            ERROR_MESSAGE);
-                }
+                load(file);
             }
         }
     }
 
-    private File getFile() {
+    private File getFile(String title) {
         JFileChooser c = createJFileChooser();
         CarFilter carFilter = new CarFilter();
         c.addChoosableFileFilter(carFilter);
         c.setFileFilter(carFilter);
         c.setFileSelectionMode(FILES_ONLY);
-        c.setDialogTitle(CarCosts.getBundle().getString("save-car-title"));
+        c.setDialogTitle(title);
         if (file == null)
             c.setCurrentDirectory(getLastDirectoryPreference());
         else
@@ -728,42 +831,75 @@ public class CarView extends ManagedJPanel {
     }
 
     private void saveAs() {
-        File file = getFile();
+        File file = getFile(CarCosts.getBundle().getString("save-car-title"));
 
         // file was choosen
-        if (file != null) {
-
-            // if choosen file exists, query user before overwriting
-            if (file.exists()) {
-                int option = JOptionPane.showConfirmDialog(frame,
-                        Util.formatString(CarCosts.getBundle().getString("save-car-overwrite"),
-                                new Object[]{file.getName()}),
-                        CarCosts.getBundle().getString("carcosts-title"),
-                        JOptionPane.YES_NO_OPTION);
+        if (file != null && confirmOverwrite(file))
+            save(file);
+    }
 
-                if (option == JOptionPane.NO_OPTION)
-                    return;
-            }
+    private boolean confirmOverwrite(File file) {
+        // if choosen file exists, query user before overwriting
+        if (file.exists()) {
+            int option = JOptionPane.showConfirmDialog(frame,
+                    Util.formatString(CarCosts.getBundle().getString("save-car-overwrite"),
+                            new Object[]{file.getName()}),
+                    CarCosts.getBundle().getString("carcosts-title"),
+                    JOptionPane.YES_NO_OPTION);
 
-            save(file);
+            if (option == JOptionPane.NO_OPTION)
+                return false;
         }
+        return true;
     }
 
-    private void save(File file) {
+    /**
+     * Save the car on a worker thread and report a failure when the
+     * save is complete.
+     */
+    private void save(final File file) {
         if (file == null)
             return;
 
+        final Future<?> saved = car.getSaver().saveLater(file);
+        setCar(file, car);
+        // the file becomes a snapshot by the save
+        car.getSaver().setAutosaveFile(file);
+
+        new SwingWorker<Throwable, Void>() {
+            protected Throwable doInBackground() throws InterruptedException {
+                try {
+                    saved.get();
+                    return null;
+                } catch (ExecutionException e) {
+                    return e.getCause();
+                }
+            }
+
+            protected void done() {
+                Throwable failure;
+                try {
+                    failure = get();
+                } catch (Exception e) {
+                    failure = e;
+                }
+                if (failure != null)
+                    JOptionPane.showMessageDialog(null, Util.formatString(CarCosts.getBundle().getString("save-car-failed"),
+                            new Object[]{file.getName(), failure}),
+                            CarCosts.getBundle().getString("carcosts-title"),
+                            ERROR_MESSAGE);
+            }
+        }.execute();
+    }
+
+    /**
+     * Wait until the saves of the car have been written.
+     */
+    public void waitForSave() {
         try {
-            car.writeCsv(file);
-            car.writeAmigaCarCosts(file);
-            setCar(file, car);
+            car.getSaver().waitForSaves();
         } catch (IOException e) {
             e.printStackTrace();
-
-            JOptionPane.showMessageDialog(null, Util.formatString(CarCosts.getBundle().getString("save-car-failed"),
-                    new Object[]{file.getName(), e}),
-                    CarCosts.getBundle().getString("carcosts-title"),
-                    ERROR_MESSAGE);
         }
     }
 
@@ -850,6 +986,141 @@ public class CarView extends ManagedJPanel {
         }
     }
 
+    /**
+     * An action, which exports a car in Amiga CarCosts format and as CSV.
+     */
+    public class ExportCarAction extends AbstractAction {
+
+        /**
+         * Construct a new action.
+         */
+        public ExportCarAction() {
+            super("export-car");
+        }
+
+        /**
+         * Process the event.
+         *
+         * @param e the action event
+         */
+        public void actionPerformed(ActionEvent e) {
+            File file = getFile(CarCosts.getBundle().getString("export-car-title"));
+            if (file == null || !confirmOverwrite(file))
+                return;
+
+            try {
+                car.writeCsv(file);
+                car.writeAmigaCarCosts(file);
+            } catch (IOException ie) {
+                ie.printStackTrace();
+
+                JOptionPane.showMessageDialog(null, Util.formatString(CarCosts.getBundle().getString("save-car-failed"),
+                        new Object[]{file.getName(), ie}),
+                        CarCosts.getBundle().getString("carcosts-title"),
+                        ERROR_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * An action, which appends the fillings and maintenances of CSV
+     * files exported before to the car.
+     */
+    public class ImportCarAction extends AbstractAction {
+
+        /**
+         * Construct a new action.
+         */
+        public ImportCarAction() {
+            super("import-car");
+        }
+
+        /**
+         * Process the event.
+         *
+         * @param e the action event
+         */
+        public void actionPerformed(ActionEvent e) {
+            JFileChooser c = createJFileChooser();
+            c.setFileSelectionMode(FILES_ONLY);
+            c.setDialogTitle(CarCosts.getBundle().getString("import-car-title"));
+            if (file == null)
+                c.setCurrentDirectory(getLastDirectoryPreference());
+            else
+                c.setCurrentDirectory(file);
+
+            if (c.showOpenDialog(null) != APPROVE_OPTION)
+                return;
+
+            File file = c.getSelectedFile();
+            setLastDirectoryPreference(file);
+
+            // the exporter appends -fuel.csv and -maintenance.csv to the name of the car
+            String path = file.getAbsolutePath();
+            for (String suffix : new String[]{"-fuel.csv", "-maintenance.csv"}) {
+                if (path.endsWith(suffix))
+                    path = path.substring(0, path.length() - suffix.length());
+            }
+
+            final File base = new File(path);
+            final File selected = file;
+            final CarIngest ingest = car.getIngest();
+
+            // read on a worker thread, the ingest adds the records in batches
+            new SwingWorker<Integer, Void>() {
+                protected Integer doInBackground() throws IOException {
+                    int count = new CsvImporter().read(ingest, base);
+                    ingest.waitForDrain();
+                    return count;
+                }
+
+                protected void done() {
+                    try {
+                        get();
+                    } catch (InterruptedException ie) {
+                        // canceled
+                    } catch (ExecutionException ee) {
+                        Throwable cause = ee.getCause();
+                        cause.printStackTrace();
+
+                        // the records before an invalid one have been added
+                        String message = cause instanceof CsvImporter.ImportException ?
+                                Util.formatString(CarCosts.getBundle().getString("import-car-failed"),
+                                        new Object[]{selected.getName(), ((CsvImporter.ImportException) cause).getImported(),
+                                                ((CsvImporter.ImportException) cause).getProblem()}) :
+                                Util.formatString(CarCosts.getBundle().getString("load-car-failed"),
+                                        new Object[]{selected.getName(), cause});
+                        JOptionPane.showMessageDialog(null, message,
+                                CarCosts.getBundle().getString("carcosts-title"),
+                                ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        }
+    }
+
+    /**
+     * An action, which cancels loading a car.
+     */
+    public class CancelLoadAction extends AbstractAction {
+
+        /**
+         * Construct a new action.
+         */
+        public CancelLoadAction() {
+            super("cancel-load");
+        }
+
+        /**
+         * Process the event.
+         *
+         * @param e the action event
+         */
+        public void actionPerformed(ActionEvent e) {
+            cancelLoad();
+        }
+    }
+
     /**
      * An action, which edits the fillngs.
      */
@@ -885,6 +1156,41 @@ public class CarView extends ManagedJPanel {
         }
     }
 
+    /**
+     * An action, which shows the costs by year and month.
+     */
+    public class ShowPeriodCostsAction extends AbstractAction {
+
+        /**
+         * Construct a new action.
+         */
+        public ShowPeriodCostsAction() {
+            super("show-period-costs");
+        }
+
+        /**
+         * Process the event.
+         *
+         * @param e the action event
+         */
+        public void actionPerformed(ActionEvent e) {
+            RegistredJFrame frame = new RegistredJFrame(CarCosts.getFrameManager(),
+                    CarCosts.getBundle().getString("periodcost-title"),
+                    CarCosts.getNextFrameCount());
+            if (car == null) {
+                setCar(null, new Car());
+            }
+
+            PeriodCostView view = new PeriodCostView(car);
+            view.setFrame(frame);
+
+            frame.setIconImage(CarCosts.getBundle().getIcon("periodcost-image").getImage());
+            frame.getContentPane().add("Center", view);
+            frame.setSize(700, 450);
+            frame.setVisible(true);
+        }
+    }
+
     /**
      * An action, which edits the maintenances.
      */
@@ -926,6 +1232,8 @@ public class CarView extends ManagedJPanel {
     private JMenuBar menuBar;
     private JMenu windowMenu;
     private CarPane pane;
+    private JPanel progressPanel = new JPanel();
+    private JProgressBar progressBar = new JProgressBar(0, 100);
 
     private ListenerManager listenerMgr;
     private Action[] actions = null;
@@ -936,4 +1244,5 @@ public class CarView extends ManagedJPanel {
 
     private File file;
     private Car car;
+    private CarLoader loader;
 }
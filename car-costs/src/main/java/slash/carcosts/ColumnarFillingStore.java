@@ -0,0 +1,297 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.gui.model.CalendarModel;
+import slash.gui.model.DoubleModel;
+import slash.gui.model.IntegerModel;
+import slash.util.EpochDays;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Stores the fillings in primitive arrays: the date as days since
+ * 1970-01-01, the mileage, quantity and costs and the currency as
+ * a code into a dictionary of currencies.
+ * <p>
+ * The store hands out lightweight fillings which read their values
+ * from the arrays. Only when the models of such a filling are
+ * requested, e.g. to edit it, a complete filling is created for it.
+ * This needs a fraction of the heap of keeping <code>Filling</code>
+ * objects with all their models for large archives. The time of
+ * day of the dates is not kept.
+ *
+ * @author Christian Pesch
+ */
+
+public class ColumnarFillingStore implements FillingStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    public ColumnarFillingStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ColumnarFillingStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        days = new int[capacity];
+        mileages = new int[capacity];
+        quantities = new double[capacity];
+        costs = new double[capacity];
+        currencyCodes = new byte[capacity];
+        ids = new int[capacity];
+        rows = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Filling get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return new StoredFilling(this, ids[index]);
+    }
+
+    public int indexOf(Filling filling) {
+        if (filling instanceof StoredFilling) {
+            StoredFilling stored = (StoredFilling) filling;
+            if (stored.store == this)
+                return rows[stored.id];
+        }
+        return -1;
+    }
+
+    public int idOf(Filling filling) {
+        return indexOf(filling) != -1 ? ((StoredFilling) filling).id : -1;
+    }
+
+    public Filling getById(int id) {
+        return id >= 0 && id < nextId && rows[id] != -1 ? new StoredFilling(this, id) : null;
+    }
+
+    public Filling add(Filling filling) {
+        return add(EpochDays.toEpochDay(filling.getDate()), filling.getMileage(),
+                filling.getQuantity(), filling.getCosts(), filling.getCurrency());
+    }
+
+    public Filling add(int epochDay, int mileage, double quantity, double costs, Currency currency) {
+        ensureCapacity(size + 1);
+
+        int id = nextId++;
+        if (id >= rows.length)
+            rows = Arrays.copyOf(rows, Math.max(rows.length * 2, id + 1));
+        rows[id] = size;
+        ids[size] = id;
+        set(size, epochDay, mileage, quantity, costs, currency);
+        size++;
+
+        return new StoredFilling(this, id);
+    }
+
+    public void update(int index, Filling filling) {
+        set(index, EpochDays.toEpochDay(filling.getDate()), filling.getMileage(),
+                filling.getQuantity(), filling.getCosts(), filling.getCurrency());
+    }
+
+    public void remove(int index) {
+        rows[ids[index]] = -1;
+
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(days, index + 1, days, index, moved);
+            System.arraycopy(mileages, index + 1, mileages, index, moved);
+            System.arraycopy(quantities, index + 1, quantities, index, moved);
+            System.arraycopy(costs, index + 1, costs, index, moved);
+            System.arraycopy(currencyCodes, index + 1, currencyCodes, index, moved);
+            System.arraycopy(ids, index + 1, ids, index, moved);
+            for (int i = index; i < size - 1; i++)
+                rows[ids[i]] = i;
+        }
+        size--;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            rows[ids[i]] = -1;
+        size = 0;
+    }
+
+    /**
+     * @return a copy of the list of fillings, which read their values
+     *         from the store
+     */
+    public List<Filling> getFillings() {
+        List<Filling> result = new ArrayList<Filling>(size);
+        for (int i = 0; i < size; i++)
+            result.add(new StoredFilling(this, ids[i]));
+        return result;
+    }
+
+    public long estimateHeapSize() {
+        // the day, mileage, quantity, costs, currency and id of each row
+        // plus the row of each id
+        return (long) days.length * (4 + 4 + 8 + 8 + 1 + 4) + (long) rows.length * 4;
+    }
+
+    private void set(int row, int epochDay, int mileage, double quantity, double costs, Currency currency) {
+        this.days[row] = epochDay;
+        this.mileages[row] = mileage;
+        this.quantities[row] = quantity;
+        this.costs[row] = costs;
+        this.currencyCodes[row] = encode(currency);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= days.length)
+            return;
+
+        int length = Math.max(capacity, days.length + (days.length >> 1));
+        days = Arrays.copyOf(days, length);
+        mileages = Arrays.copyOf(mileages, length);
+        quantities = Arrays.copyOf(quantities, length);
+        costs = Arrays.copyOf(costs, length);
+        currencyCodes = Arrays.copyOf(currencyCodes, length);
+        ids = Arrays.copyOf(ids, length);
+    }
+
+    private byte encode(Currency currency) {
+        int code = currencies.indexOf(currency);
+        if (code == -1) {
+            if (currencies.size() > 255)
+                throw new IllegalStateException("Too many currencies");
+            currencies.add(currency);
+            code = currencies.size() - 1;
+        }
+        return (byte) code;
+    }
+
+    private Currency decode(byte code) {
+        return currencies.get(code & 0xFF);
+    }
+
+    private int row(int id) {
+        int row = rows[id];
+        if (row == -1)
+            throw new IllegalStateException("Filling was removed");
+        return row;
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * A filling which reads its values from the arrays of the store
+     * until its models are requested.
+     */
+    private static class StoredFilling extends Filling {
+        public StoredFilling(ColumnarFillingStore store, int id) {
+            this.store = store;
+            this.id = id;
+        }
+
+        private Filling materialize() {
+            if (filling == null)
+                filling = new Filling(getDate(), getMileage(), getQuantity(), getCosts(), getCurrency());
+            return filling;
+        }
+
+        public Calendar getDate() {
+            return filling != null ? filling.getDate() : EpochDays.toCalendar(store.days[store.row(id)]);
+        }
+
+        public int getMileage() {
+            return filling != null ? filling.getMileage() : store.mileages[store.row(id)];
+        }
+
+        public double getQuantity() {
+            return filling != null ? filling.getQuantity() : store.quantities[store.row(id)];
+        }
+
+        public double getCosts() {
+            return filling != null ? filling.getCosts() : store.costs[store.row(id)];
+        }
+
+        public Currency getCurrency() {
+            return filling != null ? filling.getCurrency() : store.decode(store.currencyCodes[store.row(id)]);
+        }
+
+        public double getAverageCosts() {
+            return getCurrency().toEuro(getCosts()) / getQuantity();
+        }
+
+        public long getSortKey() {
+            if (filling != null)
+                return filling.getSortKey();
+            int row = store.row(id);
+            return toSortKey(store.days[row], store.mileages[row]);
+        }
+
+        public CalendarModel getDateModel() {
+            return materialize().getDateModel();
+        }
+
+        public IntegerModel getMileageModel() {
+            return materialize().getMileageModel();
+        }
+
+        public DoubleModel getQuantityModel() {
+            return materialize().getQuantityModel();
+        }
+
+        public DoubleModel getCostsModel() {
+            return materialize().getCostsModel();
+        }
+
+        public CurrencyModel getCurrencyModel() {
+            return materialize().getCurrencyModel();
+        }
+
+        public void setFilling(Filling filling) {
+            materialize().setFilling(filling);
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof StoredFilling)) return false;
+
+            StoredFilling other = (StoredFilling) o;
+            return store == other.store && id == other.id;
+        }
+
+        public int hashCode() {
+            return id;
+        }
+
+        public String toString() {
+            return filling != null ? filling.toString() :
+                    new Filling(getDate(), getMileage(), getQuantity(), getCosts(), getCurrency()).toString();
+        }
+
+        private ColumnarFillingStore store;
+        private int id;
+        private Filling filling;
+    }
+
+    // --- member variables ------------------------------------
+
+    private int size = 0;
+    private int[] days;
+    private int[] mileages;
+    private double[] quantities;
+    private double[] costs;
+    private byte[] currencyCodes;
+    private List<Currency> currencies = new ArrayList<Currency>();
+
+    // stable ids of the rows, since the rows move on removal
+    private int[] ids;
+    private int[] rows;
+    private int nextId = 0;
+}
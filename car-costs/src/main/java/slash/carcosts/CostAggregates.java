@@ -0,0 +1,169 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.EpochDays;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Keeps the sums and the minimum and maximum values of the records
+ * of <code>FuelCosts</code> or <code>MaintenanceCosts</code> up to
+ * date, so that they don't have to be recalculated from all records
+ * for every change. The values a record contributed are kept in the
+ * <code>CostRecords</code> of its <code>FuelCosts</code> or
+ * <code>MaintenanceCosts</code>.
+ * <p>
+ * Only when a record with a minimum or maximum value is removed the
+ * extremes are searched again among the records, the next time they
+ * are requested.
+ *
+ * @author Christian Pesch
+ */
+
+class CostAggregates {
+
+    public CostAggregates(CostRecords records) {
+        this.records = records;
+        clear();
+    }
+
+    /**
+     * Add the values of the record with the id.
+     */
+    public void add(int id) {
+        count++;
+        totalCosts += records.getCosts(id);
+        totalQuantity += records.getQuantity(id);
+        if (!stale)
+            extend(id);
+    }
+
+    /**
+     * Subtract the values the record with the id contributed.
+     */
+    public void remove(int id) {
+        // the sums are added up like before, without records they are exactly zero
+        if (--count == 0) {
+            clear();
+            return;
+        }
+
+        totalCosts -= records.getCosts(id);
+        totalQuantity -= records.getQuantity(id);
+        int mileage = records.getMileage(id), day = records.getDay(id);
+        if (mileage == minimumMileage || mileage == maximumMileage ||
+                day == earliestDay || day == latestDay)
+            stale = true;
+    }
+
+    public void clear() {
+        count = 0;
+        totalCosts = 0.0;
+        totalQuantity = 0.0;
+        resetExtremes();
+        stale = false;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the least mileage of a record.
+     */
+    public int getMinimumMileage() {
+        validate();
+        return count == 0 ? 0 : minimumMileage;
+    }
+
+    /**
+     * @return the largest mileage of a record.
+     */
+    public int getMaximumMileage() {
+        validate();
+        return count == 0 ? 0 : maximumMileage;
+    }
+
+    /**
+     * @return the total costs in EUR.
+     */
+    public double getTotalCosts() {
+        return totalCosts;
+    }
+
+    /**
+     * @return the total quantity.
+     */
+    public double getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    /**
+     * @return the earliest date of a record but not later than today.
+     */
+    public Calendar getEarliestDate() {
+        validate();
+        Calendar minimum = new GregorianCalendar();
+        if (count > 0 && earliestDay < EpochDays.toEpochDay(minimum))
+            minimum = EpochDays.toCalendar(earliestDay);
+        return minimum;
+    }
+
+    /**
+     * @return the latest date of a record but not earlier than
+     *         the earliest date.
+     */
+    public Calendar getLatestDate() {
+        Calendar maximum = getEarliestDate();
+        if (count > 0 && latestDay > EpochDays.toEpochDay(maximum))
+            maximum = EpochDays.toCalendar(latestDay);
+        return maximum;
+    }
+
+    private void extend(int id) {
+        int mileage = records.getMileage(id), day = records.getDay(id);
+        minimumMileage = Math.min(minimumMileage, mileage);
+        maximumMileage = Math.max(maximumMileage, mileage);
+        earliestDay = Math.min(earliestDay, day);
+        latestDay = Math.max(latestDay, day);
+    }
+
+    private void resetExtremes() {
+        minimumMileage = Integer.MAX_VALUE;
+        maximumMileage = Integer.MIN_VALUE;
+        earliestDay = Integer.MAX_VALUE;
+        latestDay = Integer.MIN_VALUE;
+    }
+
+    private void validate() {
+        if (!stale)
+            return;
+
+        resetExtremes();
+        for (int id = 0, limit = records.getLimit(); id < limit; id++) {
+            if (records.contains(id))
+                extend(id);
+        }
+        stale = false;
+    }
+
+    // --- member variables ------------------------------------
+
+    private CostRecords records;
+    private int count;
+    private int minimumMileage;
+    private int maximumMileage;
+    private int earliestDay;
+    private int latestDay;
+    private boolean stale;
+    private double totalCosts;
+    private double totalQuantity;
+}
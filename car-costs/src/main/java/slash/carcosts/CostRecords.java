@@ -0,0 +1,141 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the values which the records of <code>FuelCosts</code> or
+ * <code>MaintenanceCosts</code> contributed to their sums, once for the
+ * aggregates, the time series and the rollup. They are kept apart from
+ * the records since the models of a record may be changed before the
+ * sums are notified, and the former values have to be subtracted then.
+ * <p>
+ * The records are identified by ids which stay the same while a record
+ * is kept, e.g. the ids of a <code>FillingStore</code>, and the values
+ * are kept in primitive arrays indexed by them.
+ *
+ * @author Christian Pesch
+ */
+
+class CostRecords {
+    private static final int INITIAL_CAPACITY = 16;
+
+    public boolean contains(int id) {
+        return id >= 0 && id < present.length && present[id];
+    }
+
+    /**
+     * Keep the values of the record, its distance is 0 until it is set.
+     *
+     * @param day the date as days since 1970-01-01
+     * @param costs the costs in EUR
+     */
+    public void put(int id, int day, int mileage, double costs, double quantity) {
+        ensureCapacity(id + 1);
+        if (!present[id]) {
+            present[id] = true;
+            size++;
+        }
+        if (id >= limit)
+            limit = id + 1;
+
+        days[id] = day;
+        mileages[id] = mileage;
+        this.costs[id] = costs;
+        quantities[id] = quantity;
+        distances[id] = 0.0;
+    }
+
+    public void remove(int id) {
+        if (contains(id)) {
+            present[id] = false;
+            size--;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(present, 0, limit, false);
+        size = 0;
+        limit = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the ids are less than the limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the date as days since 1970-01-01
+     */
+    public int getDay(int id) {
+        return days[id];
+    }
+
+    public int getMileage(int id) {
+        return mileages[id];
+    }
+
+    /**
+     * @return the costs in EUR
+     */
+    public double getCosts(int id) {
+        return costs[id];
+    }
+
+    public double getQuantity(int id) {
+        return quantities[id];
+    }
+
+    /**
+     * @return the kilometers driven since the record before
+     */
+    public double getDistance(int id) {
+        return distances[id];
+    }
+
+    public void setDistance(int id, double distance) {
+        distances[id] = distance;
+    }
+
+    public long estimateHeapSize() {
+        // the day, mileage, costs, quantity, distance and presence of each id
+        return (long) present.length * (4 + 4 + 8 + 8 + 8 + 1);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= present.length)
+            return;
+
+        int length = Math.max(capacity, present.length + (present.length >> 1));
+        days = Arrays.copyOf(days, length);
+        mileages = Arrays.copyOf(mileages, length);
+        costs = Arrays.copyOf(costs, length);
+        quantities = Arrays.copyOf(quantities, length);
+        distances = Arrays.copyOf(distances, length);
+        present = Arrays.copyOf(present, length);
+    }
+
+    // --- member variables ------------------------------------
+
+    private int size = 0;
+    private int limit = 0;
+    private int[] days = new int[INITIAL_CAPACITY];
+    private int[] mileages = new int[INITIAL_CAPACITY];
+    private double[] costs = new double[INITIAL_CAPACITY];
+    private double[] quantities = new double[INITIAL_CAPACITY];
+    private double[] distances = new double[INITIAL_CAPACITY];
+    private boolean[] present = new boolean[INITIAL_CAPACITY];
+}
@@ -0,0 +1,199 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sums the costs, quantities and distances of records by month and by
+ * year, so that the figures of a month or a year are looked up in
+ * constant time instead of scanning all records.
+ * <p>
+ * The sums are updated with every record added, changed or removed.
+ * Months start with 0 like in Calendar. The values a record contributed
+ * are kept in the <code>CostRecords</code> of its <code>FuelCosts</code>
+ * or <code>MaintenanceCosts</code>.
+ *
+ * @author Christian Pesch
+ */
+
+public class CostRollup {
+
+    /**
+     * Add the values of the record with the id.
+     */
+    void add(CostRecords records, int id) {
+        update(records.getDay(id), records.getCosts(id), records.getQuantity(id), records.getDistance(id), 1);
+    }
+
+    /**
+     * Subtract the values the record with the id contributed.
+     */
+    void remove(CostRecords records, int id) {
+        update(records.getDay(id), records.getCosts(id), records.getQuantity(id), records.getDistance(id), -1);
+    }
+
+    /**
+     * Add the change of the distance of a record at the day.
+     */
+    void addDistance(int day, double distance) {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        months.get(toMonthKey(date.getYear(), date.getMonthValue() - 1)).distance += distance;
+        years.get(date.getYear()).distance += distance;
+    }
+
+    /**
+     * Replace the sums by those of all records, looking up the month
+     * and the year only when the day changes from one record to the next.
+     */
+    void build(CostRecords records) {
+        clear();
+
+        int day = 0;
+        Sums month = null, year = null;
+        for (int id = 0, limit = records.getLimit(); id < limit; id++) {
+            if (!records.contains(id))
+                continue;
+
+            if (month == null || records.getDay(id) != day) {
+                day = records.getDay(id);
+                LocalDate date = LocalDate.ofEpochDay(day);
+                month = getSums(months, toMonthKey(date.getYear(), date.getMonthValue() - 1));
+                year = getSums(years, date.getYear());
+            }
+            add(month, records, id);
+            add(year, records, id);
+        }
+    }
+
+    public void clear() {
+        months.clear();
+        years.clear();
+    }
+
+    /**
+     * @return the sums of the month or <code>null</code> if there are
+     *         no records in the month
+     */
+    public Sums getMonth(int year, int month) {
+        return months.get(toMonthKey(year, month));
+    }
+
+    /**
+     * @return the sums of the year or <code>null</code> if there are
+     *         no records in the year
+     */
+    public Sums getYear(int year) {
+        return years.get(year);
+    }
+
+    /**
+     * @return the months with records as <code>year * 12 + month</code>
+     *         in ascending order
+     */
+    public int[] getMonths() {
+        return sortedKeys(months);
+    }
+
+    /**
+     * @return the years with records in ascending order
+     */
+    public int[] getYears() {
+        return sortedKeys(years);
+    }
+
+    public static int toMonthKey(int year, int month) {
+        return year * 12 + month;
+    }
+
+    private static int[] sortedKeys(Map<Integer, Sums> map) {
+        int[] keys = new int[map.size()];
+        int i = 0;
+        for (Integer key : map.keySet())
+            keys[i++] = key;
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    long estimateHeapSize() {
+        // an entry, a key and the sums for each month and year
+        return (long) (months.size() + years.size()) * (32 + 16 + 40);
+    }
+
+    private void update(int day, double costs, double quantity, double distance, int sign) {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        update(months, toMonthKey(date.getYear(), date.getMonthValue() - 1), costs, quantity, distance, sign);
+        update(years, date.getYear(), costs, quantity, distance, sign);
+    }
+
+    private static Sums getSums(Map<Integer, Sums> map, int key) {
+        Sums sums = map.get(key);
+        if (sums == null) {
+            sums = new Sums();
+            map.put(key, sums);
+        }
+        return sums;
+    }
+
+    private static void add(Sums sums, CostRecords records, int id) {
+        sums.count++;
+        sums.costs += records.getCosts(id);
+        sums.quantity += records.getQuantity(id);
+        sums.distance += records.getDistance(id);
+    }
+
+    private void update(Map<Integer, Sums> map, int key, double costs, double quantity, double distance, int sign) {
+        Sums sums = getSums(map, key);
+        sums.count += sign;
+        if (sums.count == 0) {
+            // drop the rounding errors left by adding and subtracting
+            map.remove(key);
+            return;
+        }
+        sums.costs += sign * costs;
+        sums.quantity += sign * quantity;
+        sums.distance += sign * distance;
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * The sums of the records of a month or a year.
+     */
+    public static class Sums {
+        public int getCount() {
+            return count;
+        }
+
+        public double getCosts() {
+            return costs;
+        }
+
+        public double getQuantity() {
+            return quantity;
+        }
+
+        public double getDistance() {
+            return distance;
+        }
+
+        private int count;
+        private double costs;
+        private double quantity;
+        private double distance;
+    }
+
+    // --- member variables ------------------------------------
+
+    private Map<Integer, Sums> months = new HashMap<Integer, Sums>();
+    private Map<Integer, Sums> years = new HashMap<Integer, Sums>();
+}
@@ -0,0 +1,223 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+/**
+ * Sums the costs, quantities and distances of records by their day,
+ * so that the sums between two days are answered in O(log n) instead
+ * of scanning all records.
+ * <p>
+ * The days are kept in binary indexed trees which cover the days from
+ * the earliest to the latest record and grow when a record is outside.
+ * Days are counted since 1970-01-01, ranges include both days. The
+ * values a record contributed are kept in the <code>CostRecords</code>
+ * of its <code>FuelCosts</code> or <code>MaintenanceCosts</code>.
+ *
+ * @author Christian Pesch
+ */
+
+public class CostTimeSeries {
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Add the values of the record with the id.
+     */
+    void add(CostRecords records, int id) {
+        count++;
+        update(records.getDay(id), records.getCosts(id), records.getQuantity(id), records.getDistance(id));
+    }
+
+    /**
+     * Subtract the values the record with the id contributed.
+     */
+    void remove(CostRecords records, int id) {
+        if (--count == 0)
+            clear();
+        else
+            update(records.getDay(id), -records.getCosts(id), -records.getQuantity(id), -records.getDistance(id));
+    }
+
+    /**
+     * Add the change of the distance of a record at the day.
+     */
+    void addDistance(int day, double distance) {
+        update(day, 0.0, 0.0, distance);
+    }
+
+    /**
+     * Replace the sums by those of all records, building the trees in
+     * O(n) instead of adding the records one by one.
+     */
+    void build(CostRecords records) {
+        clear();
+
+        int first = Integer.MAX_VALUE, last = Integer.MIN_VALUE;
+        for (int id = 0, limit = records.getLimit(); id < limit; id++) {
+            if (records.contains(id)) {
+                first = Math.min(first, records.getDay(id));
+                last = Math.max(last, records.getDay(id));
+            }
+        }
+        if (first > last)
+            return;
+
+        capacity = INITIAL_CAPACITY;
+        while (capacity < (long) last - first + 1)
+            capacity *= 2;
+        origin = first;
+        costs = new double[capacity + 1];
+        quantities = new double[capacity + 1];
+        distances = new double[capacity + 1];
+
+        for (int id = 0, limit = records.getLimit(); id < limit; id++) {
+            if (records.contains(id)) {
+                int index = records.getDay(id) - origin + 1;
+                costs[index] += records.getCosts(id);
+                quantities[index] += records.getQuantity(id);
+                distances[index] += records.getDistance(id);
+                count++;
+            }
+        }
+        toTree(costs, capacity);
+        toTree(quantities, capacity);
+        toTree(distances, capacity);
+    }
+
+    public void clear() {
+        count = 0;
+        costs = quantities = distances = null;
+        capacity = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    long estimateHeapSize() {
+        // the costs, quantities and distances of each day
+        return (long) capacity * 3 * 8;
+    }
+
+    /**
+     * @return the costs of the records between the days
+     */
+    public double getCosts(int fromDay, int toDay) {
+        return sum(costs, fromDay, toDay);
+    }
+
+    /**
+     * @return the quantity of the records between the days
+     */
+    public double getQuantity(int fromDay, int toDay) {
+        return sum(quantities, fromDay, toDay);
+    }
+
+    /**
+     * @return the distance of the records between the days
+     */
+    public double getDistance(int fromDay, int toDay) {
+        return sum(distances, fromDay, toDay);
+    }
+
+    private double sum(double[] tree, int fromDay, int toDay) {
+        if (tree == null || fromDay > toDay)
+            return 0.0;
+        return prefix(tree, toDay) - prefix(tree, fromDay - 1);
+    }
+
+    /**
+     * @return the sum of the tree up to and including the day
+     */
+    private double prefix(double[] tree, int day) {
+        long index = (long) day - origin + 1;
+        if (index <= 0)
+            return 0.0;
+        int i = (int) Math.min(index, capacity);
+
+        double sum = 0.0;
+        for (; i > 0; i -= i & -i)
+            sum += tree[i];
+        return sum;
+    }
+
+    private void update(int day, double cost, double quantity, double distance) {
+        ensureRange(day);
+
+        for (int i = day - origin + 1; i <= capacity; i += i & -i) {
+            costs[i] += cost;
+            quantities[i] += quantity;
+            distances[i] += distance;
+        }
+    }
+
+    private void ensureRange(int day) {
+        if (capacity == 0) {
+            capacity = INITIAL_CAPACITY;
+            origin = day - capacity / 2;
+            costs = new double[capacity + 1];
+            quantities = new double[capacity + 1];
+            distances = new double[capacity + 1];
+            return;
+        }
+
+        if (day >= origin && day < origin + capacity)
+            return;
+
+        int newOrigin = origin;
+        int newCapacity = capacity;
+        while (day < newOrigin || day >= newOrigin + newCapacity) {
+            // grow to the side of the day
+            if (day < newOrigin)
+                newOrigin -= newCapacity;
+            newCapacity *= 2;
+        }
+
+        costs = rebuild(costs, origin - newOrigin, newCapacity);
+        quantities = rebuild(quantities, origin - newOrigin, newCapacity);
+        distances = rebuild(distances, origin - newOrigin, newCapacity);
+        origin = newOrigin;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Recover the values of the days from the tree, move them by the
+     * offset and build a tree of the new capacity from them, in O(n).
+     */
+    private double[] rebuild(double[] tree, int offset, int newCapacity) {
+        for (int i = capacity; i > 0; i--) {
+            int parent = i + (i & -i);
+            if (parent <= capacity)
+                tree[parent] -= tree[i];
+        }
+
+        double[] result = new double[newCapacity + 1];
+        System.arraycopy(tree, 1, result, offset + 1, capacity);
+        toTree(result, newCapacity);
+        return result;
+    }
+
+    /**
+     * Turn the values of the days into a tree in place, in O(n).
+     */
+    private static void toTree(double[] values, int capacity) {
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity)
+                values[parent] += values[i];
+        }
+    }
+
+    // --- member variables ------------------------------------
+
+    private int count = 0;
+    private int origin;
+    private int capacity = 0;
+    // binary indexed trees, index 1 is the day origin
+    private double[] costs, quantities, distances;
+}
@@ -0,0 +1,403 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Exports the fillings and maintenances of a car as CSV files.
+ * <p>
+ * The records are formatted in chunks by the tasks of a
+ * <code>ForkJoinPool</code> into buffers which are reused for later
+ * chunks. The chunks are written in order with gathering writes as
+ * soon as they are formatted, so only a few chunks are kept in memory
+ * at a time. The files of the fillings and the maintenances are
+ * exported concurrently.
+ * <p>
+ * The delimiter, the line separator and the encoding default to those
+ * of <code>Car.writeCsv(File)</code> before: a semicolon and the line
+ * separator and the encoding of the platform. Titles and notes are
+ * quoted if they contain the delimiter, double quotes or line breaks.
+ *
+ * @author Christian Pesch
+ */
+
+public class CsvExporter {
+    public static final char DEFAULT_DELIMITER = ';';
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    public CsvExporter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public CsvExporter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public String getLineSeparator() {
+        return lineSeparator;
+    }
+
+    public void setLineSeparator(String lineSeparator) {
+        this.lineSeparator = lineSeparator;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the number of records formatted by one task.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("Chunk size " + chunkSize + " is less than 1");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Export the car into <code>file-maintenance.csv</code> and
+     * <code>file-fuel.csv</code> like <code>Car.writeCsv(File)</code>.
+     */
+    public void export(final Car car, File file) throws IOException {
+        final File maintenanceFile = new File(file.getAbsolutePath() + "-maintenance.csv");
+        File fuelFile = new File(file.getAbsolutePath() + "-fuel.csv");
+
+        ForkJoinTask<Void> maintenance = pool.submit(new Callable<Void>() {
+            public Void call() throws IOException {
+                exportMaintenances(car.getMaintenanceCosts(), maintenanceFile);
+                return null;
+            }
+        });
+        try {
+            exportFillings(car.getFuelCosts(), fuelFile);
+        } finally {
+            join(maintenance);
+        }
+    }
+
+    public void exportFillings(FuelCosts fuel, File file) throws IOException {
+        FileChannel channel = new FileOutputStream(file).getChannel();
+        try {
+            exportFillings(fuel, channel);
+        } finally {
+            channel.close();
+        }
+    }
+
+    public void exportFillings(FuelCosts fuel, GatheringByteChannel channel) throws IOException {
+        export(new FillingRecords(fuel.getFillings()), FuelCosts.CSV_COLUMNS, channel);
+    }
+
+    public void exportMaintenances(MaintenanceCosts maintenance, File file) throws IOException {
+        FileChannel channel = new FileOutputStream(file).getChannel();
+        try {
+            exportMaintenances(maintenance, channel);
+        } finally {
+            channel.close();
+        }
+    }
+
+    public void exportMaintenances(MaintenanceCosts maintenance, GatheringByteChannel channel) throws IOException {
+        export(new MaintenanceRecords(maintenance.getMaintenances()), MaintenanceCosts.CSV_COLUMNS, channel);
+    }
+
+    private void export(Records records, String[] columns, GatheringByteChannel channel) throws IOException {
+        Chunk header = new Chunk();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0)
+                header.text.append(delimiter);
+            header.text.append(columns[i]);
+        }
+        header.text.append(lineSeparator);
+        header.encode(0);
+        write(channel, new ByteBuffer[]{header.bytes}, 1);
+        int markLength = getMarkLength(charset);
+
+        int count = records.size();
+        int chunks = (count + chunkSize - 1) / chunkSize;
+        int window = Math.max(2, 2 * pool.getParallelism());
+        ArrayDeque<Chunk> free = new ArrayDeque<Chunk>(window);
+        free.push(header);
+        ArrayDeque<ForkJoinTask<Chunk>> pending = new ArrayDeque<ForkJoinTask<Chunk>>(window);
+        ByteBuffer[] buffers = new ByteBuffer[window];
+        Chunk[] written = new Chunk[window];
+
+        try {
+            int next = 0;
+            while (next < chunks || !pending.isEmpty()) {
+                while (next < chunks && pending.size() < window) {
+                    Chunk chunk = free.isEmpty() ? new Chunk() : free.pop();
+                    int from = next * chunkSize;
+                    pending.add(pool.submit(new FormatTask(records, chunk, from, Math.min(from + chunkSize, count), markLength)));
+                    next++;
+                }
+
+                // wait for the next chunk in order and take all formatted chunks after it
+                int length = 0;
+                do {
+                    written[length] = join(pending.poll());
+                    buffers[length] = written[length].bytes;
+                    length++;
+                } while (!pending.isEmpty() && pending.peek().isDone());
+
+                write(channel, buffers, length);
+                for (int i = 0; i < length; i++) {
+                    free.push(written[i]);
+                    written[i] = null;
+                    buffers[i] = null;
+                }
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : pending)
+                task.cancel(false);
+        }
+    }
+
+    private static void write(GatheringByteChannel channel, ByteBuffer[] buffers, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            channel.write(buffers, offset, length - offset);
+            while (offset < length && !buffers[offset].hasRemaining())
+                offset++;
+        }
+    }
+
+    /**
+     * Get the length of the byte order mark, which encoders like the
+     * one of UTF-16 write in front of every text they encode. Only the
+     * header of a file keeps it.
+     */
+    private static int getMarkLength(Charset charset) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder();
+        int one = encoder.encode(CharBuffer.wrap("0")).remaining();
+        int two = encoder.encode(CharBuffer.wrap("00")).remaining();
+        return 2 * one - two;
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Append the date like <code>FuelCosts.formatDate</code> does.
+     */
+    private static void appendDate(StringBuilder text, int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        int day = date.getDayOfMonth();
+        text.append((char) ('0' + day / 10)).append((char) ('0' + day % 10));
+        text.append('-').append(FuelCosts.months[date.getMonthValue() - 1]).append('-').append(date.getYear());
+    }
+
+    /**
+     * Append the text and quote it if it contains the delimiter, double
+     * quotes or line breaks, so that the {@link CsvImporter} reads it back.
+     * <code>null</code> is written unquoted, the text "null" quoted.
+     */
+    private void appendText(StringBuilder text, String string) {
+        if (string == null || !needsQuotes(string)) {
+            text.append(string);
+            return;
+        }
+
+        text.append('"');
+        for (int i = 0, c = string.length(); i < c; i++) {
+            char ch = string.charAt(i);
+            if (ch == '"')
+                text.append('"');
+            text.append(ch);
+        }
+        text.append('"');
+    }
+
+    private boolean needsQuotes(String string) {
+        if (string.equals(CsvImporter.NULL))
+            return true;
+        for (int i = 0, c = string.length(); i < c; i++) {
+            char ch = string.charAt(i);
+            if (ch == delimiter || ch == '"' || ch == '\n' || ch == '\r')
+                return true;
+        }
+        return false;
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * The records of a CSV file, which are formatted by index.
+     */
+    private abstract class Records {
+        abstract int size();
+
+        abstract void append(StringBuilder text, int index);
+    }
+
+    private class FillingRecords extends Records {
+        public FillingRecords(List<Filling> fillings) {
+            this.fillings = fillings;
+        }
+
+        int size() {
+            return fillings.size();
+        }
+
+        void append(StringBuilder text, int index) {
+            Filling filling = fillings.get(index);
+            appendDate(text, Filling.toEpochDay(filling.getSortKey()));
+            text.append(delimiter).append(filling.getMileage());
+            text.append(delimiter).append(filling.getQuantity());
+            text.append(delimiter).append(filling.getCosts());
+            text.append(delimiter).append(filling.getCurrency().getName());
+        }
+
+        private List<Filling> fillings;
+    }
+
+    private class MaintenanceRecords extends Records {
+        public MaintenanceRecords(List<Maintenance> maintenances) {
+            this.maintenances = maintenances;
+        }
+
+        int size() {
+            return maintenances.size();
+        }
+
+        void append(StringBuilder text, int index) {
+            Maintenance maintenance = maintenances.get(index);
+            appendDate(text, Filling.toEpochDay(maintenance.getSortKey()));
+            text.append(delimiter).append(maintenance.getMileage());
+            text.append(delimiter).append(maintenance.getCosts());
+            text.append(delimiter).append(maintenance.getCurrency().getName());
+            text.append(delimiter);
+            appendText(text, maintenance.getTitle());
+            text.append(delimiter);
+            appendText(text, maintenance.getNote());
+        }
+
+        private List<Maintenance> maintenances;
+    }
+
+    /**
+     * The reusable buffers of a chunk of records: the text is
+     * formatted into a <code>StringBuilder</code>, copied into the
+     * chars and encoded into the bytes, which are written.
+     */
+    private class Chunk {
+        /**
+         * Encode the text into the bytes and skip the byte order mark.
+         */
+        void encode(int markLength) {
+            int length = text.length();
+            if (chars.capacity() < length)
+                chars = CharBuffer.allocate(length);
+            chars.clear();
+            text.getChars(0, length, chars.array(), 0);
+            chars.limit(length);
+
+            if (encoder == null || !encoder.charset().equals(charset))
+                encoder = charset.newEncoder().
+                        onMalformedInput(CodingErrorAction.REPLACE).
+                        onUnmappableCharacter(CodingErrorAction.REPLACE);
+            int capacity = (int) Math.ceil(length * (double) encoder.maxBytesPerChar());
+            if (bytes.capacity() < capacity)
+                bytes = ByteBuffer.allocate(capacity);
+            bytes.clear();
+            encoder.reset();
+            encoder.encode(chars, bytes, true);
+            encoder.flush(bytes);
+            bytes.flip();
+            bytes.position(Math.min(markLength, bytes.limit()));
+            text.setLength(0);
+        }
+
+        private StringBuilder text = new StringBuilder();
+        private CharBuffer chars = CharBuffer.allocate(0);
+        private ByteBuffer bytes = ByteBuffer.allocate(0);
+        private CharsetEncoder encoder;
+    }
+
+    private class FormatTask implements Callable<Chunk> {
+        public FormatTask(Records records, Chunk chunk, int from, int to, int markLength) {
+            this.records = records;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.markLength = markLength;
+        }
+
+        public Chunk call() {
+            StringBuilder text = chunk.text;
+            for (int i = from; i < to; i++) {
+                records.append(text, i);
+                text.append(lineSeparator);
+            }
+            chunk.encode(markLength);
+            return chunk;
+        }
+
+        private Records records;
+        private Chunk chunk;
+        private int from, to;
+        private int markLength;
+    }
+
+    // --- member variables ------------------------------------
+
+    private ForkJoinPool pool;
+    private char delimiter = DEFAULT_DELIMITER;
+    private String lineSeparator = System.getProperty("line.separator");
+    private Charset charset = Charset.defaultCharset();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+}
@@ -0,0 +1,612 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.EpochDays;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Imports the CSV files written by the {@link CsvExporter} and
+ * appends their records to the fillings and maintenances of a car.
+ * <p>
+ * The files are read through a window of bytes, which is refilled
+ * from the channel when a record reaches its end. Records are split
+ * into fields by their start and end index in the window and parsed
+ * by a {@link ByteFieldParser}, so only titles, notes and unknown
+ * currencies are decoded into <code>String</code>s. Fields may be
+ * quoted with double quotes and contain the delimiter, line breaks
+ * and doubled quotes then. Since older exports didn't quote, the rest
+ * of a maintenance line goes into its note if it has too many fields.
+ * <p>
+ * The records are added in batches, each batch is a bulk update of
+ * the <code>FuelCosts</code> or <code>MaintenanceCosts</code> and
+ * fires a single event. An import on a worker thread hands them to a
+ * {@link CarIngest} instead. A first line which doesn't start with a
+ * digit is taken as the header and skipped.
+ * <p>
+ * The records are not validated in advance: an invalid record stops
+ * the import with an {@link ImportException}, the records before it
+ * have been added then and are counted by the exception.
+ *
+ * @author Christian Pesch
+ */
+
+public class CsvImporter {
+    public static final int DEFAULT_BATCH_SIZE = 8192;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int FILLING_FIELDS = 5;
+    private static final int MAINTENANCE_FIELDS = 6;
+    // the unquoted text of a field which is null
+    static final String NULL = "null";
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(char delimiter) {
+        if (delimiter > 127 || delimiter == '"' || delimiter == '\n' || delimiter == '\r')
+            throw new IllegalArgumentException("Delimiter " + delimiter + " is not supported");
+        this.delimiter = delimiter;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Set the charset of the files, which has to encode ASCII
+     * characters in one byte like UTF-8 and the ISO-8859 charsets.
+     */
+    public void setCharset(Charset charset) {
+        byte[] ascii = "0;\"\n".getBytes(charset);
+        if (!Arrays.equals(ascii, new byte[]{'0', ';', '"', '\n'}))
+            throw new IllegalArgumentException("Charset " + charset + " is not ASCII compatible");
+        this.charset = charset;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of records added with one event.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size " + batchSize + " is less than 1");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Import <code>file-fuel.csv</code> and <code>file-maintenance.csv</code>
+     * as written by <code>CsvExporter.export(Car, File)</code>. Missing
+     * files are skipped.
+     *
+     * @return the number of records imported
+     */
+    public int read(Car car, File file) throws IOException {
+        return read(file, new CostsSink(car.getFuelCosts()), new CostsSink(car.getMaintenanceCosts()));
+    }
+
+    /**
+     * Import the files like {@link #read(Car, File)}, but hand the
+     * records to the ingest of a car, which adds them on the Event
+     * Dispatch Thread. Call this on a worker thread.
+     *
+     * @return the number of records read
+     */
+    public int read(CarIngest ingest, File file) throws IOException {
+        Sink sink = new IngestSink(ingest);
+        return read(file, sink, sink);
+    }
+
+    private int read(File file, Sink fillings, Sink maintenances) throws IOException {
+        File fuelFile = new File(file.getAbsolutePath() + "-fuel.csv");
+        File maintenanceFile = new File(file.getAbsolutePath() + "-maintenance.csv");
+        if (!fuelFile.exists() && !maintenanceFile.exists())
+            throw new IOException("Neither " + fuelFile + " nor " + maintenanceFile + " found");
+
+        int count = 0;
+        if (fuelFile.exists())
+            count += readFillings(fuelFile, fillings);
+        if (maintenanceFile.exists()) {
+            try {
+                count += readMaintenances(maintenanceFile, maintenances);
+            } catch (ImportException e) {
+                // count the fillings imported before, too
+                throw new ImportException(e.getProblem(), count + e.getImported(), e.getCause());
+            }
+        }
+        return count;
+    }
+
+    public int readFillings(FuelCosts fuel, File file) throws IOException {
+        return readFillings(file, new CostsSink(fuel));
+    }
+
+    private int readFillings(File file, Sink sink) throws IOException {
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            return readFillings(channel, sink);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Append the fillings read from the channel.
+     *
+     * @return the number of fillings read
+     * @throws ImportException if a filling is invalid, the fillings
+     *                         before it have been added
+     */
+    public int readFillings(FuelCosts fuel, ReadableByteChannel channel) throws IOException {
+        return readFillings(channel, new CostsSink(fuel));
+    }
+
+    /**
+     * Hand the fillings read from the channel to the ingest.
+     *
+     * @return the number of fillings read
+     */
+    public int readFillings(CarIngest ingest, ReadableByteChannel channel) throws IOException {
+        return readFillings(channel, new IngestSink(ingest));
+    }
+
+    private int readFillings(ReadableByteChannel channel, Sink sink) throws IOException {
+        Scanner scanner = new Scanner(channel);
+        int count = 0;
+        sink.begin();
+        try {
+            while (scanner.nextRecord()) {
+                int day, mileage;
+                double quantity, costs;
+                Currency currency;
+                try {
+                    scanner.require(FILLING_FIELDS);
+                    day = scanner.parseDate(0);
+                    mileage = scanner.parseInt(1);
+                    quantity = scanner.parseDouble(2);
+                    costs = scanner.parseDouble(3);
+                    currency = scanner.parseCurrency(4);
+                } catch (Exception e) {
+                    throw new ImportException("Invalid filling in line " + scanner.getLineNumber(), count, e);
+                }
+                sink.addFilling(day, mileage, quantity, costs, currency);
+
+                if (++count % batchSize == 0)
+                    sink.batch();
+            }
+        } finally {
+            sink.end();
+        }
+        return count;
+    }
+
+    public int readMaintenances(MaintenanceCosts maintenance, File file) throws IOException {
+        return readMaintenances(file, new CostsSink(maintenance));
+    }
+
+    private int readMaintenances(File file, Sink sink) throws IOException {
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            return readMaintenances(channel, sink);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Append the maintenances read from the channel.
+     *
+     * @return the number of maintenances read
+     * @throws ImportException if a maintenance is invalid, the
+     *                         maintenances before it have been added
+     */
+    public int readMaintenances(MaintenanceCosts maintenance, ReadableByteChannel channel) throws IOException {
+        return readMaintenances(channel, new CostsSink(maintenance));
+    }
+
+    /**
+     * Hand the maintenances read from the channel to the ingest.
+     *
+     * @return the number of maintenances read
+     */
+    public int readMaintenances(CarIngest ingest, ReadableByteChannel channel) throws IOException {
+        return readMaintenances(channel, new IngestSink(ingest));
+    }
+
+    private int readMaintenances(ReadableByteChannel channel, Sink sink) throws IOException {
+        Scanner scanner = new Scanner(channel);
+        int count = 0;
+        sink.begin();
+        try {
+            while (scanner.nextRecord()) {
+                Maintenance maintenance;
+                try {
+                    scanner.require(MAINTENANCE_FIELDS - 1);
+                    int day = scanner.parseDate(0);
+                    int mileage = scanner.parseInt(1);
+                    double costs = scanner.parseDouble(2);
+                    Currency currency = scanner.parseCurrency(3);
+                    String title = scanner.decode(4);
+                    String note = scanner.decodeRest(MAINTENANCE_FIELDS - 1);
+                    maintenance = new Maintenance(EpochDays.toCalendar(day), mileage, title, note, costs, currency);
+                } catch (Exception e) {
+                    throw new ImportException("Invalid maintenance in line " + scanner.getLineNumber(), count, e);
+                }
+                sink.addMaintenance(maintenance);
+
+                if (++count % batchSize == 0)
+                    sink.batch();
+            }
+        } finally {
+            sink.end();
+        }
+        return count;
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * Signals an invalid record, which stopped an import after the
+     * records before it have been added.
+     */
+    public static class ImportException extends IOException {
+        public ImportException(String problem, int imported, Throwable cause) {
+            super(problem, cause);
+            this.problem = problem;
+            this.imported = imported;
+        }
+
+        public String getProblem() {
+            return problem;
+        }
+
+        /**
+         * @return the number of records added before the invalid one
+         */
+        public int getImported() {
+            return imported;
+        }
+
+        public String getMessage() {
+            return problem + ", " + imported + " records imported before";
+        }
+
+        private String problem;
+        private int imported;
+    }
+
+    /**
+     * Receives the records read.
+     */
+    private interface Sink {
+        void begin();
+
+        void batch();
+
+        void end();
+
+        void addFilling(int day, int mileage, double quantity, double costs, Currency currency) throws IOException;
+
+        void addMaintenance(Maintenance maintenance) throws IOException;
+    }
+
+    /**
+     * Adds the records directly, each batch in a bulk update.
+     */
+    private static class CostsSink implements Sink {
+        public CostsSink(FuelCosts fuel) {
+            this.fuel = fuel;
+        }
+
+        public CostsSink(MaintenanceCosts maintenance) {
+            this.maintenance = maintenance;
+        }
+
+        public void begin() {
+            if (fuel != null)
+                fuel.beginUpdate();
+            else
+                maintenance.beginUpdate();
+        }
+
+        public void batch() {
+            end();
+            begin();
+        }
+
+        public void end() {
+            if (fuel != null)
+                fuel.endUpdate();
+            else
+                maintenance.endUpdate();
+        }
+
+        public void addFilling(int day, int mileage, double quantity, double costs, Currency currency) {
+            fuel.addFilling(day, mileage, quantity, costs, currency);
+        }
+
+        public void addMaintenance(Maintenance maintenance) {
+            this.maintenance.addMaintenance(maintenance);
+        }
+
+        private FuelCosts fuel;
+        private MaintenanceCosts maintenance;
+    }
+
+    /**
+     * Hands the records to the ingest, which batches them itself.
+     */
+    private static class IngestSink implements Sink {
+        public IngestSink(CarIngest ingest) {
+            this.ingest = ingest;
+        }
+
+        public void begin() {
+        }
+
+        public void batch() {
+        }
+
+        public void end() {
+        }
+
+        public void addFilling(int day, int mileage, double quantity, double costs, Currency currency) throws IOException {
+            ingest.addFilling(day, mileage, quantity, costs, currency);
+        }
+
+        public void addMaintenance(Maintenance maintenance) throws IOException {
+            ingest.addMaintenance(maintenance);
+        }
+
+        private CarIngest ingest;
+    }
+
+    /**
+     * Splits the bytes read from a channel into records and fields.
+     */
+    private class Scanner {
+        public Scanner(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.parser = new ByteFieldParser(charset);
+            setBytes(new byte[INITIAL_BUFFER_SIZE]);
+        }
+
+        private void setBytes(byte[] bytes) {
+            this.bytes = bytes;
+            parser.setBuffer(ByteBuffer.wrap(bytes));
+        }
+
+        /**
+         * @return the line in which the current record starts
+         */
+        public int getLineNumber() {
+            return recordLineNumber;
+        }
+
+        /**
+         * Move to the next record and split it into fields. Empty lines
+         * and a header in the first line are skipped.
+         *
+         * @return false at the end of the file
+         */
+        public boolean nextRecord() throws IOException {
+            while (true) {
+                // skip line breaks and count the lines
+                while (true) {
+                    while (position == limit) {
+                        if (!fill())
+                            return false;
+                    }
+                    byte b = bytes[position];
+                    if (b == '\n') {
+                        if (!afterReturn)
+                            lineNumber++;
+                        afterReturn = false;
+                    } else if (b == '\r') {
+                        lineNumber++;
+                        afterReturn = true;
+                    } else
+                        break;
+                    position++;
+                }
+                afterReturn = false;
+                recordLineNumber = lineNumber;
+
+                while (!split()) {
+                    if (!fill())
+                        break;
+                }
+                int first = fieldEnds[0] > fieldStarts[0] ? bytes[fieldStarts[0]] : 0;
+                boolean header = records++ == 0 && !(first >= '0' && first <= '9');
+                if (!header)
+                    return true;
+            }
+        }
+
+        /**
+         * Split the record starting at the position into fields.
+         *
+         * @return false if the end of the window is reached before the
+         *         end of the record and the end of the file
+         */
+        private boolean split() {
+            fieldCount = 0;
+            int lines = 0;
+            int index = position;
+            while (true) {
+                boolean quoted = index < limit && bytes[index] == '"';
+                int start, end;
+                if (quoted) {
+                    start = ++index;
+                    while (true) {
+                        if (index == limit) {
+                            if (!eof)
+                                return false;
+                            break;
+                        }
+                        byte b = bytes[index];
+                        if (b == '"') {
+                            if (index + 1 == limit && !eof)
+                                return false;
+                            if (index + 1 < limit && bytes[index + 1] == '"')
+                                index += 2;
+                            else
+                                break;
+                        } else {
+                            if (b == '\n' && (index == start || bytes[index - 1] != '\r') || b == '\r')
+                                lines++;
+                            index++;
+                        }
+                    }
+                    end = index;
+                    if (index < limit)
+                        index++;
+
+                    // be tolerant about garbage behind the closing quote
+                    while (index < limit && bytes[index] != delimiter && bytes[index] != '\n' && bytes[index] != '\r')
+                        index++;
+                } else {
+                    start = index;
+                    while (index < limit && bytes[index] != delimiter && bytes[index] != '\n' && bytes[index] != '\r')
+                        index++;
+                    end = index;
+                }
+
+                if (index == limit && !eof)
+                    return false;
+                addField(start, end, quoted);
+                if (index == limit || bytes[index] != delimiter) {
+                    position = index;
+                    lineNumber += lines;
+                    return true;
+                }
+                index++;
+            }
+        }
+
+        private void addField(int start, int end, boolean quoted) {
+            if (fieldCount == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, 2 * fieldCount);
+                fieldEnds = Arrays.copyOf(fieldEnds, 2 * fieldCount);
+                fieldQuoted = Arrays.copyOf(fieldQuoted, 2 * fieldCount);
+            }
+            fieldStarts[fieldCount] = start;
+            fieldEnds[fieldCount] = end;
+            fieldQuoted[fieldCount] = quoted;
+            fieldCount++;
+        }
+
+        /**
+         * Move the current record to the start of the window, grow the
+         * window if the record fills it and read from the channel.
+         *
+         * @return false at the end of the file
+         */
+        private boolean fill() throws IOException {
+            if (eof)
+                return false;
+
+            int remaining = limit - position;
+            if (remaining == bytes.length)
+                setBytes(Arrays.copyOf(bytes, 2 * bytes.length));
+            else
+                System.arraycopy(bytes, position, bytes, 0, remaining);
+            position = 0;
+            limit = remaining;
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, limit, bytes.length - limit);
+            int read = channel.read(buffer);
+            while (read == 0)
+                read = channel.read(buffer);
+            if (read == -1)
+                eof = true;
+            else
+                limit += read;
+            return true;
+        }
+
+        public void require(int count) {
+            if (fieldCount < count)
+                throw new IllegalArgumentException(fieldCount + " fields found, " + count + " expected");
+        }
+
+        public int parseInt(int field) {
+            return parser.parseInt(fieldStarts[field], fieldEnds[field]);
+        }
+
+        public double parseDouble(int field) {
+            return parser.parseDouble(fieldStarts[field], fieldEnds[field]);
+        }
+
+        public Currency parseCurrency(int field) {
+            return parser.parseCurrency(fieldStarts[field], fieldEnds[field]);
+        }
+
+        public int parseDate(int field) {
+            return parser.parseDate(fieldStarts[field], fieldEnds[field], false);
+        }
+
+        /**
+         * Decode the field, the unquoted text <code>null</code> is
+         * decoded to <code>null</code> like the exporter writes it.
+         */
+        public String decode(int field) {
+            if (field >= fieldCount)
+                return null;
+            String text = parser.decode(fieldStarts[field], fieldEnds[field]);
+            if (fieldQuoted[field])
+                return text.replace("\"\"", "\"");
+            return toNull(text);
+        }
+
+        /**
+         * Decode the field and, if it isn't quoted, all fields behind it
+         * with their delimiters.
+         */
+        public String decodeRest(int field) {
+            if (field >= fieldCount - 1 || fieldQuoted[field])
+                return decode(field);
+            return toNull(parser.decode(fieldStarts[field], fieldEnds[fieldCount - 1]));
+        }
+
+        private String toNull(String text) {
+            return NULL.equals(text) ? null : text;
+        }
+
+        private ReadableByteChannel channel;
+        private ByteFieldParser parser;
+        private byte[] bytes;
+        private int position, limit;
+        private boolean eof = false;
+        private int lineNumber = 1, recordLineNumber, records = 0;
+        private boolean afterReturn = false;
+
+        private int fieldCount;
+        private int[] fieldStarts = new int[MAINTENANCE_FIELDS + 2];
+        private int[] fieldEnds = new int[MAINTENANCE_FIELDS + 2];
+        private boolean[] fieldQuoted = new boolean[MAINTENANCE_FIELDS + 2];
+    }
+
+    // --- member variables ------------------------------------
+
+    private char delimiter = CsvExporter.DEFAULT_DELIMITER;
+    private Charset charset = Charset.defaultCharset();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+}
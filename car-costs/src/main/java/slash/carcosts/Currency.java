@@ -23,7 +23,7 @@ import java.util.prefs.Preferences;
 public class Currency {
    private static Map<String, Currency> currencies;
 
-    private static void initialize() {
+    private static synchronized void initialize() {
         if (currencies == null) {
             currencies = new HashMap<String, Currency>();
 
@@ -42,17 +42,17 @@ public class Currency {
         addCurrency(this);
     }
 
-    public static void addCurrency(Currency currency) {
+    public static synchronized void addCurrency(Currency currency) {
         initialize();
         currencies.put(currency.getName(), currency);
     }
 
-    public static Currency getCurrency(String currencyName) {
+    public static synchronized Currency getCurrency(String currencyName) {
         initialize();
         return currencies.get(currencyName);
     }
 
-    public static List<Currency> getCurrencies() {
+    public static synchronized List<Currency> getCurrencies() {
         initialize();
         return new ArrayList<Currency>(currencies.values());
     }
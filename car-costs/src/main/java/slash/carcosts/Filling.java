@@ -11,6 +11,11 @@ package slash.carcosts;
 import slash.gui.model.CalendarModel;
 import slash.gui.model.DoubleModel;
 import slash.gui.model.IntegerModel;
+import slash.gui.model.ModelTransaction;
+import slash.util.EpochDays;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -33,6 +38,9 @@ public class Filling {
         this.quantity = new DoubleModel(quantity);
         this.costs = new DoubleModel(costs);
         this.currency = new CurrencyModel(currency);
+
+        this.date.addChangeListener(sortKeyInvalidator);
+        this.mileage.addChangeListener(sortKeyInvalidator);
     }
 
     /**
@@ -42,6 +50,13 @@ public class Filling {
         this(new GregorianCalendar(), 0, 0.0, 0.0, currency);
     }
 
+    /**
+     * Create a filling without models for subclasses which keep
+     * their values elsewhere.
+     */
+    Filling() {
+    }
+
     /**
      * Create new filling.
      */
@@ -94,6 +109,35 @@ public class Filling {
     }
 
 
+    /**
+     * Get the key which orders the fillings like the
+     * {@link FillingComparator}. It is cached until the date or the
+     * mileage model changes.
+     */
+    public long getSortKey() {
+        if (!sortKeyValid) {
+            sortKey = toSortKey(EpochDays.toEpochDay(getDate()), getMileage());
+            sortKeyValid = true;
+        }
+        return sortKey;
+    }
+
+    /**
+     * Pack the day and the mileage into a key, which is smaller for
+     * later days and for higher mileages on the same day.
+     */
+    static long toSortKey(int epochDay, int mileage) {
+        return ~(((long) epochDay << 32) | ((mileage ^ 0x80000000L) & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Get the day back from a key made by {@link #toSortKey(int, int)}.
+     */
+    static int toEpochDay(long sortKey) {
+        return (int) (~sortKey >> 32);
+    }
+
+
     /**
      * Get model.
      */
@@ -131,14 +175,20 @@ public class Filling {
 
 
     /**
-     * Set all data.
+     * Set all data, the listeners are notified once the filling is
+     * complete.
      */
     public void setFilling(Filling filling) {
-        date.setValue(filling.date.getValue());
-        mileage.setValue(filling.mileage.getValue());
-        quantity.setValue(filling.quantity.getValue());
-        costs.setValue(filling.costs.getValue());
-        currency = filling.currency;
+        ModelTransaction.begin();
+        try {
+            date.setValue(filling.getDate());
+            mileage.setValue(filling.getMileage());
+            quantity.setValue(filling.getQuantity());
+            costs.setValue(filling.getCosts());
+            currency.setValue(filling.getCurrency());
+        } finally {
+            ModelTransaction.end();
+        }
     }
 
 
@@ -162,6 +212,14 @@ public class Filling {
     private DoubleModel quantity;
     private DoubleModel costs;
     private CurrencyModel currency;
+
+    private long sortKey;
+    private boolean sortKeyValid = false;
+    private ChangeListener sortKeyInvalidator = new ChangeListener() {
+        public void stateChanged(ChangeEvent e) {
+            sortKeyValid = false;
+        }
+    };
 }
 
 
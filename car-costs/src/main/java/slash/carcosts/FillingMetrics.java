@@ -0,0 +1,66 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+/**
+ * The values derived from a filling and the filling before it.
+ *
+ * @author Christian Pesch
+ */
+
+public class FillingMetrics {
+
+    /**
+     * Create new metrics.
+     */
+    public FillingMetrics(Filling filling, Filling previous) {
+        this.previous = previous;
+        if (previous != null) {
+            distance = filling.getMileage() - previous.getMileage();
+            averageQuantity = filling.getQuantity() / distance * 100.0;
+        }
+        averageCosts = filling.getAverageCosts();
+    }
+
+    /**
+     * @return the filling before the filling even it is at the same day
+     *         or <code>null</code> if there is none
+     */
+    public Filling getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return the distance driven since the previous filling.
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return the fuel quantity per 100 km since the previous filling.
+     */
+    public double getAverageQuantity() {
+        return averageQuantity;
+    }
+
+    /**
+     * @return the price per liter in EUR.
+     */
+    public double getAverageCosts() {
+        return averageCosts;
+    }
+
+    // --- member variables ------------------------------------
+
+    private Filling previous;
+    private int distance;
+    private double averageQuantity;
+    private double averageCosts;
+}
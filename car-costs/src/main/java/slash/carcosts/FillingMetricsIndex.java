@@ -0,0 +1,188 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the ids of the fillings of <code>FuelCosts</code> in
+ * chronological order, so that the filling before a filling and
+ * thus its <code>FillingMetrics</code> are a binary search and
+ * not a scan of all fillings.
+ * <p>
+ * The order is by the day and the mileage the fillings have in the
+ * <code>CostRecords</code>, which are kept apart from the fillings
+ * since their models may be changed before the index is notified,
+ * and by the id for fillings of the same day and mileage.
+ *
+ * @author Christian Pesch
+ */
+
+class FillingMetricsIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * @param listener is notified whenever the filling before a filling
+     *                 is determined
+     */
+    FillingMetricsIndex(CostRecords records, Listener listener) {
+        this.records = records;
+        this.listener = listener;
+    }
+
+    /**
+     * Get the filling before the filling with the id.
+     *
+     * @return the id of the filling before or -1 if there is none
+     */
+    public int getPrevious(int id) {
+        int position = positionOf(id);
+        return position > 0 ? order[position - 1] : -1;
+    }
+
+    /**
+     * Add the filling with the id, its day and mileage have to be
+     * in the records.
+     */
+    public void add(int id) {
+        int position = -(search(id) + 1);
+        if (size == order.length)
+            order = Arrays.copyOf(order, Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+        System.arraycopy(order, position, order, position + 1, size - position);
+        order[position] = id;
+        size++;
+
+        update(position);
+        update(position + 1);
+    }
+
+    /**
+     * Remove the filling with the id, its day and mileage have to be
+     * still in the records.
+     */
+    public void remove(int id) {
+        int position = positionOf(id);
+        if (position == -1)
+            return;
+
+        System.arraycopy(order, position + 1, order, position, size - position - 1);
+        size--;
+
+        update(position);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Replace the index by the ids, which are sorted once instead of
+     * being inserted one by one. The listener isn't notified.
+     */
+    void build(int[] ids) {
+        sort(ids, new int[ids.length], 0, ids.length);
+        order = ids;
+        size = ids.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the id at the position in chronological order
+     */
+    public int get(int position) {
+        return order[position];
+    }
+
+    long estimateHeapSize() {
+        return (long) order.length * 4;
+    }
+
+    private int positionOf(int id) {
+        if (!records.contains(id))
+            return -1;
+        int position = search(id);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * @return the position of the id or <code>-(insertion point) - 1</code>
+     *         like <code>Arrays.binarySearch</code>
+     */
+    private int search(int id) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = compare(order[middle], id);
+            if (compare < 0)
+                low = middle + 1;
+            else if (compare > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Merge sort the ids, which takes linear time for ids which are in
+     * order already, like the fillings of most files.
+     */
+    private void sort(int[] ids, int[] buffer, int from, int to) {
+        if (to - from < 2)
+            return;
+
+        int middle = (from + to) >>> 1;
+        sort(ids, buffer, from, middle);
+        sort(ids, buffer, middle, to);
+        if (compare(ids[middle - 1], ids[middle]) <= 0)
+            return;
+
+        System.arraycopy(ids, from, buffer, from, to - from);
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right == to || left < middle && compare(buffer[left], buffer[right]) <= 0)
+                ids[i] = buffer[left++];
+            else
+                ids[i] = buffer[right++];
+        }
+    }
+
+    private int compare(int id1, int id2) {
+        int day1 = records.getDay(id1), day2 = records.getDay(id2);
+        if (day1 != day2)
+            return day1 < day2 ? -1 : 1;
+        int mileage1 = records.getMileage(id1), mileage2 = records.getMileage(id2);
+        if (mileage1 != mileage2)
+            return mileage1 < mileage2 ? -1 : 1;
+        return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+    }
+
+    private void update(int position) {
+        if (position < size && listener != null)
+            listener.previousChanged(order[position], position > 0 ? order[position - 1] : -1);
+    }
+
+    // --- inner classes ---------------------------------------
+
+    interface Listener {
+        /**
+         * @param previous the id of the filling before or -1 if there is none
+         */
+        void previousChanged(int id, int previous);
+    }
+
+    // --- member variables ------------------------------------
+
+    private CostRecords records;
+    private int[] order = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private Listener listener;
+}
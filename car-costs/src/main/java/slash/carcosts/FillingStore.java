@@ -0,0 +1,76 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import java.util.List;
+
+/**
+ * Stores the fillings of <code>FuelCosts</code>.
+ *
+ * @author Christian Pesch
+ */
+
+public interface FillingStore {
+
+    int size();
+
+    Filling get(int index);
+
+    /**
+     * @return the index of the filling or -1 if it is not stored
+     */
+    int indexOf(Filling filling);
+
+    /**
+     * @return the id of the filling, which stays the same while it is
+     *         stored, or -1 if it is not stored
+     */
+    int idOf(Filling filling);
+
+    /**
+     * @return the filling with the id or <code>null</code> if it is
+     *         not stored anymore
+     */
+    Filling getById(int id);
+
+    /**
+     * Append the filling.
+     *
+     * @return the filling as it is handed out by the store afterwards
+     */
+    Filling add(Filling filling);
+
+    /**
+     * Append a filling from its values.
+     *
+     * @param epochDay the date as days since 1970-01-01
+     * @return the filling as it is handed out by the store afterwards
+     */
+    Filling add(int epochDay, int mileage, double quantity, double costs, Currency currency);
+
+    /**
+     * Take over the values of the filling at the index after it was changed.
+     */
+    void update(int index, Filling filling);
+
+    void remove(int index);
+
+    void clear();
+
+    /**
+     * @return the fillings as a list which isn't changed by later
+     *         changes of the store
+     */
+    List<Filling> getFillings();
+
+    /**
+     * @return the estimated bytes of heap which the fillings occupy
+     */
+    long estimateHeapSize();
+}
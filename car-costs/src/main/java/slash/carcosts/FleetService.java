@@ -0,0 +1,111 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Calculates the figures of a fleet of cars without a user interface.
+ * <p>
+ * The cars are read in parallel by the tasks of a
+ * <code>ForkJoinPool</code>. Each car is dropped as soon as its figures
+ * are calculated, so only the figures of the fleet are kept in memory.
+ *
+ * @author Christian Pesch
+ */
+
+public class FleetService {
+    public static final String CAR_EXTENSION = "kfz";
+
+    public FleetService() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public FleetService(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Calculate the figures of all cars in the directory.
+     */
+    public FleetStatistics collect(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null)
+            throw new IOException("Cannot list " + directory);
+
+        List<File> cars = new ArrayList<File>();
+        for (File file : files) {
+            if (file.isFile() && CAR_EXTENSION.equalsIgnoreCase(Files.getExtension(file)))
+                cars.add(file);
+        }
+        return collect(cars);
+    }
+
+    /**
+     * Calculate the figures of the cars in the files.
+     */
+    public FleetStatistics collect(List<File> files) {
+        if (files.isEmpty())
+            return FleetStatistics.EMPTY;
+        File[] array = files.toArray(new File[files.size()]);
+        return pool.invoke(new CollectTask(array, 0, array.length));
+    }
+
+    /**
+     * Calculate the figures of the car in the file.
+     */
+    public static FleetStatistics collect(File file, FillingStore store) {
+        try {
+            Car car = new Car(store);
+            car.read(file);
+            return FleetStatistics.of(file, car);
+        } catch (IOException e) {
+            return FleetStatistics.failed(file, e);
+        }
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * Splits the files in halves until one file is left.
+     */
+    private static class CollectTask extends RecursiveTask<FleetStatistics> {
+        public CollectTask(File[] files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected FleetStatistics compute() {
+            if (to - from == 1)
+                return collect(files[from], new ColumnarFillingStore());
+
+            int middle = (from + to) >>> 1;
+            CollectTask first = new CollectTask(files, from, middle);
+            CollectTask second = new CollectTask(files, middle, to);
+            first.fork();
+            FleetStatistics result = second.compute();
+            return first.join().plus(result);
+        }
+
+        private File[] files;
+        private int from, to;
+    }
+
+    // --- member variables ------------------------------------
+
+    private ForkJoinPool pool;
+}
@@ -0,0 +1,194 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The figures of a fleet of cars: the statistics of each car, their
+ * sum and the costs per currency in which they have been recorded.
+ *
+ * @author Christian Pesch
+ */
+
+public class FleetStatistics {
+    public static final FleetStatistics EMPTY = new FleetStatistics(CarStatistics.EMPTY,
+            new TreeMap<File, CarStatistics>(), new TreeMap<String, CurrencyTotals>(),
+            new TreeMap<File, IOException>());
+
+    private FleetStatistics(CarStatistics total, SortedMap<File, CarStatistics> cars,
+                            SortedMap<String, CurrencyTotals> currencies, SortedMap<File, IOException> failures) {
+        this.total = total;
+        this.cars = cars;
+        this.currencies = currencies;
+        this.failures = failures;
+    }
+
+    /**
+     * Calculate the figures of the car read from the file.
+     */
+    public static FleetStatistics of(File file, Car car) {
+        SortedMap<String, CurrencyTotals> currencies = new TreeMap<String, CurrencyTotals>();
+
+        FuelCosts fuel = car.getFuelCosts();
+        for (int i = 0, c = fuel.getSize(); i < c; i++) {
+            Filling filling = (Filling) fuel.getElementAt(i);
+            getTotals(currencies, filling.getCurrency()).fuelCosts += filling.getCosts();
+        }
+        for (Maintenance maintenance : car.getMaintenanceCosts().getMaintenances())
+            getTotals(currencies, maintenance.getCurrency()).maintenanceCosts += maintenance.getCosts();
+
+        CarStatistics statistics = car.getStatistics();
+        SortedMap<File, CarStatistics> cars = new TreeMap<File, CarStatistics>();
+        cars.put(file, statistics);
+        return new FleetStatistics(statistics, cars, currencies, new TreeMap<File, IOException>());
+    }
+
+    /**
+     * Note that the car could not be read from the file.
+     */
+    public static FleetStatistics failed(File file, IOException e) {
+        SortedMap<File, IOException> failures = new TreeMap<File, IOException>();
+        failures.put(file, e);
+        return new FleetStatistics(CarStatistics.EMPTY, new TreeMap<File, CarStatistics>(),
+                new TreeMap<String, CurrencyTotals>(), failures);
+    }
+
+    private static CurrencyTotals getTotals(Map<String, CurrencyTotals> currencies, Currency currency) {
+        String name = currency != null ? currency.getName() : "";
+        CurrencyTotals totals = currencies.get(name);
+        if (totals == null) {
+            totals = new CurrencyTotals(currency);
+            currencies.put(name, totals);
+        }
+        return totals;
+    }
+
+    /**
+     * Combine the figures with the figures of other cars.
+     */
+    public FleetStatistics plus(FleetStatistics other) {
+        SortedMap<File, CarStatistics> cars = new TreeMap<File, CarStatistics>(this.cars);
+        cars.putAll(other.cars);
+
+        SortedMap<String, CurrencyTotals> currencies = new TreeMap<String, CurrencyTotals>();
+        for (CurrencyTotals totals : this.currencies.values())
+            currencies.put(totals.getName(), totals);
+        for (CurrencyTotals totals : other.currencies.values()) {
+            CurrencyTotals existing = currencies.get(totals.getName());
+            currencies.put(totals.getName(), existing != null ? existing.plus(totals) : totals);
+        }
+
+        SortedMap<File, IOException> failures = new TreeMap<File, IOException>(this.failures);
+        failures.putAll(other.failures);
+
+        return new FleetStatistics(total.plus(other.total), cars, currencies, failures);
+    }
+
+    /**
+     * @return the sum of the statistics of all cars
+     */
+    public CarStatistics getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the statistics of each car by its file
+     */
+    public SortedMap<File, CarStatistics> getCars() {
+        return Collections.unmodifiableSortedMap(cars);
+    }
+
+    /**
+     * @return the costs by the name of the currency in which they have been recorded
+     */
+    public SortedMap<String, CurrencyTotals> getCurrencies() {
+        return Collections.unmodifiableSortedMap(currencies);
+    }
+
+    /**
+     * @return the files which could not be read with the reason
+     */
+    public SortedMap<File, IOException> getFailures() {
+        return Collections.unmodifiableSortedMap(failures);
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * The costs recorded in a currency.
+     */
+    public static class CurrencyTotals {
+        CurrencyTotals(Currency currency) {
+            this.currency = currency;
+        }
+
+        private CurrencyTotals plus(CurrencyTotals other) {
+            CurrencyTotals result = new CurrencyTotals(currency);
+            result.fuelCosts = fuelCosts + other.fuelCosts;
+            result.maintenanceCosts = maintenanceCosts + other.maintenanceCosts;
+            return result;
+        }
+
+        /**
+         * @return the currency or <code>null</code> if it is unknown
+         */
+        public Currency getCurrency() {
+            return currency;
+        }
+
+        public String getName() {
+            return currency != null ? currency.getName() : "";
+        }
+
+        /**
+         * @return the fuel costs in the currency
+         */
+        public double getFuelCosts() {
+            return fuelCosts;
+        }
+
+        /**
+         * @return the maintenance costs in the currency
+         */
+        public double getMaintenanceCosts() {
+            return maintenanceCosts;
+        }
+
+        /**
+         * @return the costs in the currency
+         */
+        public double getTotalCosts() {
+            return fuelCosts + maintenanceCosts;
+        }
+
+        /**
+         * @return the costs in EUR
+         */
+        public double getTotalEuroCosts() {
+            return currency != null ? currency.toEuro(getTotalCosts()) : 0.0;
+        }
+
+        private Currency currency;
+        private double fuelCosts;
+        private double maintenanceCosts;
+    }
+
+    // --- member variables ------------------------------------
+
+    private final CarStatistics total;
+    private final SortedMap<File, CarStatistics> cars;
+    private final SortedMap<String, CurrencyTotals> currencies;
+    private final SortedMap<File, IOException> failures;
+}
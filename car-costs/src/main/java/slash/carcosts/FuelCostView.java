@@ -9,7 +9,7 @@
 package slash.carcosts;
 
 import slash.gui.GridBagHelper;
-import slash.gui.model.SortingListModel;
+import slash.gui.model.TreeSortingListModel;
 import slash.gui.model.TypedResourceBundle;
 import slash.gui.toolkit.ActionManager;
 import slash.gui.toolkit.ListenerManager;
@@ -79,8 +79,11 @@ public class FuelCostView extends ManagedJPanel {
         JViewport port = scroller.getViewport();
 
         fillingList = new JList();
-        fillingList.setModel(new SortingListModel(car.getFuelCosts(), new FillingComparator()));
-        fillingList.setCellRenderer(new FuelListRenderer(car));
+        fillingList.setModel(new TreeSortingListModel(car.getFuelCosts(), new FillingComparator()));
+        renderer = new FuelListRenderer(car);
+        fillingList.setCellRenderer(renderer);
+        fillingList.setFixedCellHeight(renderer.getRowHeight());
+        fillingList.setFixedCellWidth(renderer.getRowWidth());
         port.add(fillingList);
 
         JPanel actionPanel = new JPanel();
@@ -209,6 +212,7 @@ public class FuelCostView extends ManagedJPanel {
         if (CarCosts.getFrameManager().getFrameCount() == 1) {
             CarCosts.getActionManager().getAction("exit").actionPerformed(null);
         } else {
+            renderer.detach();
             frame.dispose();
         }
     }
@@ -353,6 +357,7 @@ public class FuelCostView extends ManagedJPanel {
     private RegistredJFrame frame;
     private JMenuBar menuBar;
     private JList fillingList;
+    private FuelListRenderer renderer;
     private JLabel unit1;
 
     private ListenerManager listenerMgr;
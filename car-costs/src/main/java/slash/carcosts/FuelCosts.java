@@ -8,6 +8,8 @@
 
 package slash.carcosts;
 
+import slash.util.EpochDays;
+
 import javax.swing.*;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -21,6 +23,15 @@ import java.util.*;
  */
 
 public class FuelCosts extends AbstractListModel implements ListModel {
+    // a bulk update which changes more fillings than this or a quarter of
+    // the fillings rebuilds the sums and the metrics index at its end
+    private static final int REBUILD_THRESHOLD = 1024;
+
+    /**
+     * The source of the event which shows the fillings in another
+     * currency, the fillings themselves don't change.
+     */
+    public static final Object CURRENCIES = "currencies";
 
     // --- ListModel methods ----------------------------------------
 
@@ -32,67 +43,302 @@ public class FuelCosts extends AbstractListModel implements ListModel {
         return fillings.get(Math.min(index, fillings.size() - 1));
     }
 
+    // --- bulk update support ---------------------------------------
+
+    /**
+     * Start a bulk update. Until the matching {@link #endUpdate()} no
+     * events are fired, instead a single event is published at the end.
+     * If it changes many fillings, the sums and the metrics index are
+     * not updated for every filling but rebuilt at the end.
+     * Bulk updates may be nested.
+     */
+    public void beginUpdate() {
+        if (updateLevel++ == 0) {
+            updateChanges = 0;
+            updateThreshold = Math.max(REBUILD_THRESHOLD, fillings.size() / 4);
+        }
+    }
+
+    /**
+     * End a bulk update and publish one event if the fillings changed.
+     */
+    public void endUpdate() {
+        if (updateLevel == 0)
+            throw new IllegalStateException("endUpdate() without beginUpdate()");
+
+        if (--updateLevel == 0) {
+            validate();
+            if (updatePending) {
+                updatePending = false;
+                fireContentsChanged(this, 0, Integer.MAX_VALUE);
+            }
+        }
+    }
+
+    public boolean isUpdating() {
+        return updateLevel > 0;
+    }
+
+    protected void fireContentsChanged(Object source, int index0, int index1) {
+        if (isUpdating())
+            updatePending = true;
+        else
+            super.fireContentsChanged(source, index0, index1);
+    }
+
+    protected void fireIntervalAdded(Object source, int index0, int index1) {
+        if (isUpdating())
+            updatePending = true;
+        else
+            super.fireIntervalAdded(source, index0, index1);
+    }
+
+    protected void fireIntervalRemoved(Object source, int index0, int index1) {
+        if (isUpdating())
+            updatePending = true;
+        else
+            super.fireIntervalRemoved(source, index0, index1);
+    }
+
     // --- additional methods ----------------------------------------
 
     public FuelCosts() {
-        fillings = new ArrayList<Filling>();
+        this(new ListFillingStore());
+    }
+
+    /**
+     * Create fuel costs which keep their fillings in the given store,
+     * e.g. a <code>ColumnarFillingStore</code> for large archives.
+     */
+    public FuelCosts(FillingStore store) {
+        fillings = store;
     }
 
     public boolean existsFilling(Filling filling) {
-        return fillings.contains(filling);
+        return fillings.indexOf(filling) != -1;
     }
 
     public void addFilling(Filling filling) {
-        fillings.add(filling);
-        int index = fillings.indexOf(filling);
-        fireIntervalAdded(filling, index - 1, index + 1);
+        added(fillings.add(filling));
+    }
+
+    /**
+     * Add a filling from its values, which saves creating a
+     * <code>Filling</code> with stores that don't keep them.
+     *
+     * @param epochDay the date as days since 1970-01-01
+     */
+    public void addFilling(int epochDay, int mileage, double quantity, double costs, Currency currency) {
+        added(fillings.add(epochDay, mileage, quantity, costs, currency));
+    }
+
+    private void added(Filling filling) {
+        if (!isDeferred())
+            add(fillings.idOf(filling), filling);
+        int index = fillings.size() - 1;
+        fireIntervalAdded(filling, index, index);
     }
 
     public void changeFilling(Filling filling) {
         int index = fillings.indexOf(filling);
+        if (index != -1)
+            fillings.update(index, filling);
+        int id = fillings.idOf(filling);
+        if (id != -1 && !isDeferred()) {
+            remove(id);
+            add(id, filling);
+        }
         fireContentsChanged(filling, index, index);
     }
 
     public void removeFilling(Filling filling) {
         int index = fillings.indexOf(filling);
-        fillings.remove(filling);
+        int id = fillings.idOf(filling);
+        if (index != -1)
+            fillings.remove(index);
+        if (id != -1 && !isDeferred())
+            remove(id);
         fireIntervalRemoved(filling, index, index);
     }
 
     public void removeAllFillings() {
         int size = getSize();
         fillings.clear();
+        stale = false;
+        metrics.clear();
+        records.clear();
+        aggregates.clear();
+        series.clear();
+        rollup.clear();
         fireIntervalRemoved(this, 0, size);
     }
 
     public List<Filling> getFillings() {
-        return new ArrayList<Filling>(fillings);
+        return fillings.getFillings();
+    }
+
+    public FillingStore getFillingStore() {
+        return fillings;
     }
 
+    /**
+     * @return the values derived from the filling and the filling
+     *         before it or <code>null</code> if the filling is unknown
+     */
+    public FillingMetrics getMetrics(Filling filling) {
+        validate();
+        int id = fillings.idOf(filling);
+        if (id == -1 || !records.contains(id))
+            return null;
+        int previous = metrics.getPrevious(id);
+        return new FillingMetrics(filling, previous != -1 ? fillings.getById(previous) : null);
+    }
+
+    /**
+     * @return the estimated bytes of heap which the fillings and the
+     *         sums and indexes kept for them occupy
+     */
+    public long estimateHeapSize() {
+        return fillings.estimateHeapSize() + records.estimateHeapSize() + metrics.estimateHeapSize() +
+                series.estimateHeapSize() + rollup.estimateHeapSize();
+    }
+
+
+    /**
+     * @return the costs in EUR of the fillings between the dates
+     */
+    public double getTotalCosts(Calendar from, Calendar to) {
+        validate();
+        return series.getCosts(EpochDays.toEpochDay(from), EpochDays.toEpochDay(to));
+    }
+
+    /**
+     * @return the fuel quantity of the fillings between the dates
+     */
+    public double getTotalQuantity(Calendar from, Calendar to) {
+        validate();
+        return series.getQuantity(EpochDays.toEpochDay(from), EpochDays.toEpochDay(to));
+    }
+
+    /**
+     * @return the kilometers driven up to the fillings between the dates
+     */
+    public double getDistance(Calendar from, Calendar to) {
+        validate();
+        return series.getDistance(EpochDays.toEpochDay(from), EpochDays.toEpochDay(to));
+    }
+
+    /**
+     * @return the costs in EUR, quantities and kilometers driven of the
+     *         fillings by their day
+     */
+    public CostTimeSeries getTimeSeries() {
+        validate();
+        return series;
+    }
+
+    /**
+     * @return the costs in EUR, quantities and kilometers driven of the
+     *         fillings by month and year
+     */
+    public CostRollup getRollup() {
+        validate();
+        return rollup;
+    }
+
+    /**
+     * Keep the values of the filling with the id and add them to the
+     * sums, its distance is added when the filling before is known.
+     */
+    private void add(int id, Filling filling) {
+        records.put(id, Filling.toEpochDay(filling.getSortKey()), filling.getMileage(),
+                filling.getCurrency().toEuro(filling.getCosts()), filling.getQuantity());
+        aggregates.add(id);
+        series.add(records, id);
+        rollup.add(records, id);
+        metrics.add(id);
+    }
+
+    /**
+     * Subtract the values the filling with the id contributed.
+     */
+    private void remove(int id) {
+        if (!records.contains(id))
+            return;
+        metrics.remove(id);
+        aggregates.remove(id);
+        series.remove(records, id);
+        rollup.remove(records, id);
+        records.remove(id);
+    }
+
+    /**
+     * Count a change of a bulk update and tell whether the sums and the
+     * metrics index are left to be rebuilt at its end.
+     */
+    private boolean isDeferred() {
+        if (!stale && isUpdating() && ++updateChanges > updateThreshold)
+            stale = true;
+        return stale;
+    }
+
+    /**
+     * Rebuild the sums and the metrics index from the fillings if they
+     * were deferred. The totals are added up in the order of the list
+     * like when the fillings are added one by one, the fillings are
+     * sorted once and the time series and the rollup built in O(n).
+     */
+    private void validate() {
+        if (!stale)
+            return;
+        stale = false;
+
+        records.clear();
+        aggregates.clear();
+        int size = fillings.size();
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            Filling filling = fillings.get(i);
+            int id = fillings.idOf(filling);
+            records.put(id, Filling.toEpochDay(filling.getSortKey()), filling.getMileage(),
+                    filling.getCurrency().toEuro(filling.getCosts()), filling.getQuantity());
+            aggregates.add(id);
+            ids[i] = id;
+        }
+
+        metrics.build(ids);
+        for (int position = 1; position < size; position++) {
+            int id = metrics.get(position);
+            records.setDistance(id, records.getMileage(id) - records.getMileage(metrics.get(position - 1)));
+        }
+
+        series.build(records);
+        rollup.build(records);
+    }
+
+    private void setDistance(int id, double distance) {
+        double change = distance - records.getDistance(id);
+        if (change != 0.0) {
+            records.setDistance(id, distance);
+            series.addDistance(records.getDay(id), change);
+            rollup.addDistance(records.getDay(id), change);
+        }
+    }
 
     /**
      * @return the least minimum mileage of a filling.
      */
     public int getMinimumMileage() {
-        int minimum = Integer.MAX_VALUE;
-        for (Filling filling : fillings) {
-            if (filling.getMileage() < minimum) {
-                minimum = filling.getMileage();
-            }
-        }
-        return (minimum == Integer.MAX_VALUE) ? 0 : minimum;
+        validate();
+        return aggregates.getMinimumMileage();
     }
 
     /**
      * @return the least maximum mileage of a filling.
      */
     public int getMaximumMileage() {
-        int maximum = Integer.MIN_VALUE;
-        for (Filling filling : fillings) {
-            if (filling.getMileage() > maximum)
-                maximum = filling.getMileage();
-        }
-        return (maximum == Integer.MIN_VALUE) ? 0 : maximum;
+        validate();
+        return aggregates.getMaximumMileage();
     }
 
 
@@ -100,23 +346,16 @@ public class FuelCosts extends AbstractListModel implements ListModel {
      * @return the total fuel costs.
      */
     public double getTotalCosts() {
-        double costs = 0.0;
-        for (Filling filling : fillings) {
-            Currency currency = filling.getCurrency();
-            costs += currency.toEuro(filling.getCosts());
-        }
-        return costs;
+        validate();
+        return aggregates.getTotalCosts();
     }
 
     /**
      * @return the total fuel quantity.
      */
     public double getTotalQuantity() {
-        double quantity = 0.0;
-        for (Filling filling : fillings) {
-            quantity += filling.getQuantity();
-        }
-        return quantity;
+        validate();
+        return aggregates.getTotalQuantity();
     }
 
 
@@ -124,35 +363,25 @@ public class FuelCosts extends AbstractListModel implements ListModel {
      * @return the earliest filling date.
      */
     public Calendar getEarliestDate() {
-        Calendar minimum = new GregorianCalendar();
-        for (Filling filling : fillings) {
-            if (filling.getDate().before(minimum)) {
-                minimum = filling.getDate();
-            }
-        }
-        return minimum;
+        validate();
+        return aggregates.getEarliestDate();
     }
 
     /**
      * @return the latest filling date.
      */
     public Calendar getLatestDate() {
-        Calendar maximum = getEarliestDate();
-        for (Filling filling : fillings) {
-            if (filling.getDate().after(maximum)) {
-                maximum = filling.getDate();
-            }
-        }
-        return maximum;
+        validate();
+        return aggregates.getLatestDate();
     }
 
     public void updateCurrencies() {
-        fireContentsChanged(this, 0, Integer.MAX_VALUE);
+        fireContentsChanged(CURRENCIES, 0, Integer.MAX_VALUE);
     }
 
     //-- storage support ------------------------------------------------
 
-    private static final String[] months = {"Jan", "Feb", "M�r", "Apr", "Mai", "Jun",
+    static final String[] months = {"Jan", "Feb", "M�r", "Apr", "Mai", "Jun",
             "Jul", "Aug", "Sep", "Okt", "Nov", "Dez"};
 
     private Calendar parseDate(String dateString) throws NoSuchElementException {
@@ -219,29 +448,33 @@ public class FuelCosts extends AbstractListModel implements ListModel {
      * @param reader where to read from
      */
     public void read(BufferedReader reader) throws IOException {
-        removeAllFillings();
-
-        for (; ;) {
-            String line = reader.readLine();
-            if (line.startsWith("#")) {
-                break;
-            }
-
-            // System.out.println("FuelCosts read:"+line);
-            try {
-                Filling filling = readFilling(line);
-                addFilling(filling);
-            } catch (Exception e) {
-                e.printStackTrace();
-                throw new IOException("Invalid filling");
+        beginUpdate();
+        try {
+            removeAllFillings();
+
+            for (; ;) {
+                String line = reader.readLine();
+                if (line.startsWith("#")) {
+                    break;
+                }
+
+                // System.out.println("FuelCosts read:"+line);
+                try {
+                    Filling filling = readFilling(line);
+                    addFilling(filling);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    throw new IOException("Invalid filling");
+                }
             }
+        } finally {
+            endUpdate();
         }
-
-        fireIntervalAdded(this, 0, getSize());
     }
 
     public void writeAmigaCarCosts(PrintWriter writer) {
-        for (Filling filling : fillings) {
+        for (int i = 0, c = fillings.size(); i < c; i++) {
+            Filling filling = fillings.get(i);
             writer.println(formatDate(filling.getDate()) + " 0 " +
                     filling.getMileage() + " " +
                     filling.getQuantity() + " " +
@@ -250,9 +483,15 @@ public class FuelCosts extends AbstractListModel implements ListModel {
         }
     }
 
+    /**
+     * The columns of the CSV export.
+     */
+    static final String[] CSV_COLUMNS = {"Datum", "Kilometerstand", "Menge", "Kosten", "Währung"};
+
     public void writeCsv(PrintWriter writer) {
         writer.println("Datum;Kilometerstand;Menge;Kosten;Währung");
-        for (Filling filling : fillings) {
+        for (int i = 0, c = fillings.size(); i < c; i++) {
+            Filling filling = fillings.get(i);
             writer.println(formatDate(filling.getDate()) + ";" +
                     filling.getMileage() + ";" +
                     filling.getQuantity() + ";" +
@@ -263,7 +502,23 @@ public class FuelCosts extends AbstractListModel implements ListModel {
 
     // -- member variables ----------------------------------------------
 
-    private List<Filling> fillings;
+    private FillingStore fillings;
+    private CostRecords records = new CostRecords();
+    private CostTimeSeries series = new CostTimeSeries();
+    private CostRollup rollup = new CostRollup();
+    private FillingMetricsIndex metrics = new FillingMetricsIndex(records, new FillingMetricsIndex.Listener() {
+        public void previousChanged(int id, int previous) {
+            // the distance of a filling changes with the filling before it
+            setDistance(id, previous != -1 ? records.getMileage(id) - records.getMileage(previous) : 0.0);
+        }
+    });
+    private CostAggregates aggregates = new CostAggregates(records);
+    private int updateLevel = 0;
+    private boolean updatePending = false;
+    private int updateChanges = 0;
+    private int updateThreshold = 0;
+    // the sums and the metrics index are to be rebuilt from the fillings
+    private boolean stale = false;
 }
 
 
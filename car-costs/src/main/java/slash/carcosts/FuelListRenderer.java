@@ -8,75 +8,56 @@
 
 package slash.carcosts;
 
+import slash.gui.toolkit.ColumnRow;
+
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import java.awt.*;
 
 /**
  * A specialised renderer for the list.
+ * <p>
+ * The texts of the rows are cached. Since the figures of a filling
+ * depend on the filling before it, any change of the fillings drops
+ * the cache, as does a change of the currency of the car.
  *
  * @author Christian Pesch
  */
 public class FuelListRenderer implements ListCellRenderer<Filling> {
+    private static final String PROTOTYPE = "000.000,00 EUR";
+
     private Car car;
-    private JPanel panel;
-    private JLabel label1;
-    private JLabel label2;
-    private JLabel label3;
-    private JLabel label4;
-    private JLabel label5;
-    private JLabel label6;
-    private JLabel label7;
+    private ColumnRow row;
 
     /**
      * Initialize.
      */
     public FuelListRenderer(Car car) {
         this.car = car;
+        car.getFuelCosts().addListDataListener(fillingsListener);
+        car.getCurrencyModel().addChangeListener(currencyListener);
 
-        panel = new JPanel();
-        panel.setLayout(new GridLayout(1, 4));
-
-        label1 = new JLabel();
-        panel.add(label1);
-
-        label2 = new JLabel();
-        label2.setHorizontalAlignment(SwingConstants.RIGHT);
-        panel.add(label2);
-
-        label3 = new JLabel();
-        label3.setHorizontalAlignment(SwingConstants.RIGHT);
-        panel.add(label3);
-
-        label4 = new JLabel();
-        label4.setHorizontalAlignment(SwingConstants.RIGHT);
-        panel.add(label4);
-
-        label5 = new JLabel();
-        label5.setHorizontalAlignment(SwingConstants.RIGHT);
-        panel.add(label5);
-
-        label6 = new JLabel();
-        label6.setHorizontalAlignment(SwingConstants.RIGHT);
-        panel.add(label6);
+        row = new ColumnRow(new int[]{SwingConstants.LEFT,
+                SwingConstants.RIGHT, SwingConstants.RIGHT, SwingConstants.RIGHT,
+                SwingConstants.RIGHT, SwingConstants.RIGHT, SwingConstants.RIGHT}, PROTOTYPE);
+        row.setFont(UIManager.getFont("Label.font"));
+    }
 
-        label7 = new JLabel();
-        label7.setHorizontalAlignment(SwingConstants.RIGHT);
-        panel.add(label7);
+    /**
+     * Get the height of a row, which is the fixed cell height of the list.
+     */
+    public int getRowHeight() {
+        return row.getRowHeight();
     }
 
     /**
-     * Return the filling before the given filling even it is at the same day.
+     * Get the width of a row, which is the fixed cell width of the list.
      */
-    private Filling getPreviousFilling(Filling filling) {
-        Filling previous = null;
-        for (Filling element : car.getFuelCosts().getFillings()) {
-            if ((element.getDate().before(filling.getDate()) ||
-                    !element.equals(filling) && element.getDate().equals(filling.getDate()))
-                    && element.getMileage() <= filling.getMileage()) {
-                previous = element;
-            }
-        }
-        return previous;
+    public int getRowWidth() {
+        return row.getRowWidth();
     }
 
     /**
@@ -87,34 +68,83 @@ public class FuelListRenderer implements ListCellRenderer<Filling> {
                                                   int index,
                                                   boolean isSelected,
                                                   boolean cellHasFocus) {
-        label1.setText(RendererHelper.formatDate(filling.getDate()));
-        label2.setText(filling.getMileage() + " " +
-                CarCosts.getBundle().getString("fuelcost-mileage-unit-label"));
-        Filling previous = getPreviousFilling(filling);
-        if (previous != null) {
-            label3.setText(RendererHelper.formatNumber(filling.getQuantity()) + " " +
-                    CarCosts.getBundle().getString("fuelcost-quantity-unit-label"));
-            label4.setText(RendererHelper.formatNumber(filling.getCosts()) + " " +
-                    RendererHelper.formatCurrency(filling.getCurrency()));
-            int difference = filling.getMileage() - previous.getMileage();
-            label5.setText(difference + " " +
-                    CarCosts.getBundle().getString("fuelcost-mileage-unit-label"));
-            double averageQuantity = filling.getQuantity() / difference * 100.0;
-            label6.setText(RendererHelper.formatNumber(averageQuantity) + " " +
-                    CarCosts.getBundle().getString("fuelcost-quantity-unit-label"));
-            label7.setText(RendererHelper.formatPricePerLiter(car.getCurrency().fromEuro(filling.getAverageCosts())) + " " +
-                    RendererHelper.formatCurrency(car.getCurrency()));
+        Object event = CarEvents.beginRender();
+
+        String[] texts = rows.get(filling);
+        boolean formatted = texts == null;
+        if (formatted) {
+            texts = format(filling);
+            rows.put(filling, texts);
+        }
+
+        row.setTexts(texts);
+
+        row.setBackground(isSelected ? Color.red : Color.white);
+        row.setForeground(isSelected ? Color.white : Color.black);
+
+        CarEvents.commitRender(event, "filling", index, formatted);
+        return row;
+    }
+
+    private String[] format(Filling filling) {
+        String[] texts = new String[7];
+        texts[0] = RendererHelper.formatDate(filling.getDate());
+        texts[1] = filling.getMileage() + " " +
+                CarCosts.getBundle().getString("fuelcost-mileage-unit-label");
+        FillingMetrics metrics = car.getFuelCosts().getMetrics(filling);
+        if (metrics != null && metrics.getPrevious() != null) {
+            texts[2] = RendererHelper.formatNumber(filling.getQuantity()) + " " +
+                    CarCosts.getBundle().getString("fuelcost-quantity-unit-label");
+            texts[3] = RendererHelper.formatNumber(filling.getCosts()) + " " +
+                    RendererHelper.formatCurrency(filling.getCurrency());
+            texts[4] = metrics.getDistance() + " " +
+                    CarCosts.getBundle().getString("fuelcost-mileage-unit-label");
+            texts[5] = RendererHelper.formatNumber(metrics.getAverageQuantity()) + " " +
+                    CarCosts.getBundle().getString("fuelcost-quantity-unit-label");
+            texts[6] = RendererHelper.formatPricePerLiter(car.getCurrency().fromEuro(metrics.getAverageCosts())) + " " +
+                    RendererHelper.formatCurrency(car.getCurrency());
         } else {
-            label3.setText("-");
-            label4.setText("-");
-            label5.setText("-");
-            label6.setText("-");
-            label7.setText("-");
+            texts[2] = texts[3] = texts[4] = texts[5] = texts[6] = "-";
         }
+        return texts;
+    }
 
-        panel.setBackground(isSelected ? Color.red : Color.white);
-        panel.setForeground(isSelected ? Color.white : Color.black);
+    /**
+     * Drop the cached texts, so that the rows are formatted when they
+     * are painted next.
+     */
+    public void clearCache() {
+        rows.clear();
+    }
 
-        return panel;
+    /**
+     * Stop listening to the car.
+     */
+    public void detach() {
+        car.getFuelCosts().removeListDataListener(fillingsListener);
+        car.getCurrencyModel().removeChangeListener(currencyListener);
+        rows.clear();
     }
+
+    private RowCache rows = new RowCache();
+
+    private ListDataListener fillingsListener = new ListDataListener() {
+        public void intervalAdded(ListDataEvent e) {
+            rows.clear();
+        }
+
+        public void intervalRemoved(ListDataEvent e) {
+            rows.clear();
+        }
+
+        public void contentsChanged(ListDataEvent e) {
+            rows.clear();
+        }
+    };
+
+    private ChangeListener currencyListener = new ChangeListener() {
+        public void stateChanged(ChangeEvent e) {
+            rows.clear();
+        }
+    };
 }
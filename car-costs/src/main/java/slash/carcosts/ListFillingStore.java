@@ -0,0 +1,96 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.util.EpochDays;
+import slash.util.PersistentVector;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the fillings in a persistent vector, so that the list of
+ * fillings can be handed out without copying it.
+ *
+ * @author Christian Pesch
+ */
+
+public class ListFillingStore implements FillingStore {
+    // a filling with its models, calendar and listeners, with compressed oops
+    static final int FILLING_HEAP_SIZE = 760;
+
+    public int size() {
+        return fillings.size();
+    }
+
+    public Filling get(int index) {
+        return fillings.get(index);
+    }
+
+    public int indexOf(Filling filling) {
+        return fillings.indexOf(filling);
+    }
+
+    public int idOf(Filling filling) {
+        Integer id = ids.get(filling);
+        return id != null ? id : -1;
+    }
+
+    public Filling getById(int id) {
+        return id >= 0 && id < fillingsById.size() ? fillingsById.get(id) : null;
+    }
+
+    public Filling add(Filling filling) {
+        ids.put(filling, fillingsById.size());
+        fillingsById.add(filling);
+        fillings = fillings.plus(filling);
+        return filling;
+    }
+
+    public Filling add(int epochDay, int mileage, double quantity, double costs, Currency currency) {
+        return add(new Filling(EpochDays.toCalendar(epochDay), mileage, quantity, costs, currency));
+    }
+
+    public void update(int index, Filling filling) {
+        // the filling itself is stored
+    }
+
+    public void remove(int index) {
+        Integer id = ids.remove(fillings.get(index));
+        if (id != null)
+            fillingsById.set(id, null);
+        fillings = fillings.without(index);
+    }
+
+    public void clear() {
+        ids.clear();
+        fillingsById.clear();
+        fillings = PersistentVector.empty();
+    }
+
+    public List<Filling> getFillings() {
+        return fillings;
+    }
+
+    public long estimateHeapSize() {
+        // plus about one reference per filling for the vector, an entry
+        // of the map of ids with its Integer and one for the list of ids
+        return (long) size() * (FILLING_HEAP_SIZE + 4 + 12 + 16) + (long) fillingsById.size() * 4;
+    }
+
+    // -- member variables ----------------------------------------------
+
+    private volatile PersistentVector<Filling> fillings = PersistentVector.empty();
+
+    // the ids in the order the fillings were added, they are reused only after a clear()
+    private Map<Filling, Integer> ids = new IdentityHashMap<Filling, Integer>();
+    private List<Filling> fillingsById = new ArrayList<Filling>();
+}
@@ -11,7 +11,12 @@ package slash.carcosts;
 import slash.gui.model.CalendarModel;
 import slash.gui.model.DoubleModel;
 import slash.gui.model.IntegerModel;
+import slash.gui.model.ModelTransaction;
 import slash.gui.model.StringModel;
+import slash.util.EpochDays;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -35,6 +40,9 @@ public class Maintenance {
         this.note = new StringModel(note);
         this.costs = new DoubleModel(costs);
         this.currency = new CurrencyModel(currency);
+
+        this.date.addChangeListener(sortKeyInvalidator);
+        this.mileage.addChangeListener(sortKeyInvalidator);
     }
 
     /**
@@ -95,6 +103,20 @@ public class Maintenance {
     }
 
 
+    /**
+     * Get the key which orders the maintenances like the
+     * {@link MaintenanceComparator}. It is cached until the date or the
+     * mileage model changes.
+     */
+    public long getSortKey() {
+        if (!sortKeyValid) {
+            sortKey = Filling.toSortKey(EpochDays.toEpochDay(getDate()), getMileage());
+            sortKeyValid = true;
+        }
+        return sortKey;
+    }
+
+
     /**
      * Get model.
      */
@@ -138,15 +160,21 @@ public class Maintenance {
     }
 
     /**
-     * Set all data.
+     * Set all data, the listeners are notified once the maintenance is
+     * complete.
      */
     public void setMaintenance(Maintenance maintenance) {
-        date.setValue(maintenance.date.getValue());
-        mileage.setValue(maintenance.mileage.getValue());
-        title.setValue(maintenance.title.getValue());
-        note.setValue(maintenance.note.getValue());
-        costs.setValue(maintenance.costs.getValue());
-        currency = maintenance.currency;
+        ModelTransaction.begin();
+        try {
+            date.setValue(maintenance.date.getValue());
+            mileage.setValue(maintenance.mileage.getValue());
+            title.setValue(maintenance.title.getValue());
+            note.setValue(maintenance.note.getValue());
+            costs.setValue(maintenance.costs.getValue());
+            currency.setValue(maintenance.currency.getValue());
+        } finally {
+            ModelTransaction.end();
+        }
     }
 
 
@@ -171,6 +199,14 @@ public class Maintenance {
     private StringModel note;
     private DoubleModel costs;
     private CurrencyModel currency;
+
+    private long sortKey;
+    private boolean sortKeyValid = false;
+    private ChangeListener sortKeyInvalidator = new ChangeListener() {
+        public void stateChanged(ChangeEvent e) {
+            sortKeyValid = false;
+        }
+    };
 }
 
 
@@ -8,43 +8,27 @@
 
 package slash.carcosts;
 
-import java.util.Calendar;
-import java.util.Comparator;
+import slash.gui.model.SortKeyComparator;
 
 /**
- * A comparator for <code>Maintenances</code>.
+ * A comparator for <code>Maintenances</code>, which orders them by their
+ * sort keys: the latest date first and on the same day the highest
+ * mileage first.
  *
  * @author Christian Pesch
  */
-public class MaintenanceComparator implements Comparator {
+public class MaintenanceComparator implements SortKeyComparator {
 
-    private int compareCalendars(Calendar calendar1, Calendar calendar2) {
-        int year1 = calendar1.get(Calendar.YEAR);
-        int year2 = calendar2.get(Calendar.YEAR);
-        if (year1 != year2)
-            return year2 - year1;
-
-        int month1 = calendar1.get(Calendar.MONTH);
-        int month2 = calendar2.get(Calendar.MONTH);
-        if (month1 != month2)
-            return month2 - month1;
-
-        int day1 = calendar1.get(Calendar.DAY_OF_MONTH);
-        int day2 = calendar2.get(Calendar.DAY_OF_MONTH);
-        if (day1 != day2)
-            return day2 - day1;
-
-        return 0;
+    public long getSortKey(Object o) {
+        return ((Maintenance) o).getSortKey();
     }
 
     /**
      * Compare two <code>Maintenances</code> by their date.
      */
     public int compare(Object o1, Object o2) {
-        Maintenance left = (Maintenance) o1;
-        Maintenance right = (Maintenance) o2;
-
-        int result = compareCalendars(left.getDate(), right.getDate());
-        return result != 0 ? result : right.getMileage() - left.getMileage();
+        long left = getSortKey(o1);
+        long right = getSortKey(o2);
+        return left < right ? -1 : (left == right ? 0 : 1);
     }
 }
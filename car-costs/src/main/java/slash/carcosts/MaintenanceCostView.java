@@ -9,7 +9,7 @@
 package slash.carcosts;
 
 import slash.gui.GridBagHelper;
-import slash.gui.model.SortingListModel;
+import slash.gui.model.TreeSortingListModel;
 import slash.gui.model.TypedResourceBundle;
 import slash.gui.toolkit.ActionManager;
 import slash.gui.toolkit.ListenerManager;
@@ -66,8 +66,11 @@ public class MaintenanceCostView extends ManagedJPanel {
         JViewport port = scroller.getViewport();
 
         maintenanceList = new JList<>();
-        maintenanceList.setModel(new SortingListModel(car.getMaintenanceCosts(), new MaintenanceComparator()));
-        maintenanceList.setCellRenderer(new MaintenanceListRenderer());
+        maintenanceList.setModel(new TreeSortingListModel(car.getMaintenanceCosts(), new MaintenanceComparator()));
+        renderer = new MaintenanceListRenderer(car.getMaintenanceCosts());
+        maintenanceList.setCellRenderer(renderer);
+        maintenanceList.setFixedCellHeight(renderer.getRowHeight());
+        maintenanceList.setFixedCellWidth(renderer.getRowWidth());
         port.add(maintenanceList);
 
         JPanel actionPanel = new JPanel();
@@ -190,6 +193,7 @@ public class MaintenanceCostView extends ManagedJPanel {
         if (CarCosts.getFrameManager().getFrameCount() == 1) {
             CarCosts.getActionManager().getAction("exit").actionPerformed(null);
         } else {
+            renderer.detach();
             frame.dispose();
         }
     }
@@ -309,6 +313,7 @@ public class MaintenanceCostView extends ManagedJPanel {
     private RegistredJFrame frame;
     private JMenuBar menuBar;
     private JList<Maintenance> maintenanceList;
+    private MaintenanceListRenderer renderer;
 
     private ListenerManager listenerMgr;
     private Action[] actions = null;
@@ -8,6 +8,9 @@
 
 package slash.carcosts;
 
+import slash.util.EpochDays;
+import slash.util.PersistentVector;
+
 import javax.swing.*;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -32,10 +35,59 @@ public class MaintenanceCosts extends AbstractListModel implements ListModel {
         return maintenances.get(Math.min(index, maintenances.size() - 1));
     }
 
+    // --- bulk update support ---------------------------------------
+
+    /**
+     * Start a bulk update. Until the matching {@link #endUpdate()} no
+     * events are fired, instead a single event is published at the end.
+     * Bulk updates may be nested.
+     */
+    public void beginUpdate() {
+        updateLevel++;
+    }
+
+    /**
+     * End a bulk update and publish one event if the maintenances changed.
+     */
+    public void endUpdate() {
+        if (updateLevel == 0)
+            throw new IllegalStateException("endUpdate() without beginUpdate()");
+
+        if (--updateLevel == 0 && updatePending) {
+            updatePending = false;
+            fireContentsChanged(this, 0, Integer.MAX_VALUE);
+        }
+    }
+
+    public boolean isUpdating() {
+        return updateLevel > 0;
+    }
+
+    protected void fireContentsChanged(Object source, int index0, int index1) {
+        if (isUpdating())
+            updatePending = true;
+        else
+            super.fireContentsChanged(source, index0, index1);
+    }
+
+    protected void fireIntervalAdded(Object source, int index0, int index1) {
+        if (isUpdating())
+            updatePending = true;
+        else
+            super.fireIntervalAdded(source, index0, index1);
+    }
+
+    protected void fireIntervalRemoved(Object source, int index0, int index1) {
+        if (isUpdating())
+            updatePending = true;
+        else
+            super.fireIntervalRemoved(source, index0, index1);
+    }
+
     // --- additional methods ----------------------------------------
 
     public MaintenanceCosts() {
-        maintenances = new ArrayList<Maintenance>();
+        maintenances = PersistentVector.empty();
     }
 
     public boolean existsMaintenance(Maintenance maintenance) {
@@ -43,68 +95,113 @@ public class MaintenanceCosts extends AbstractListModel implements ListModel {
     }
 
     public void addMaintenance(Maintenance maintenance) {
-        maintenances.add(maintenance);
-        int index = maintenances.indexOf(maintenance);
+        maintenances = maintenances.plus(maintenance);
+        aggregate(maintenance);
+        int index = maintenances.size() - 1;
         fireIntervalAdded(maintenance, index, index);
     }
 
     public void changeMaintenance(Maintenance maintenance) {
         int index = maintenances.indexOf(maintenance);
+        aggregate(maintenance);
         fireContentsChanged(maintenance, index, index);
     }
 
     public void removeMaintenance(Maintenance maintenance) {
         int index = maintenances.indexOf(maintenance);
-        maintenances.remove(maintenance);
+        if (index != -1)
+            maintenances = maintenances.without(index);
+        Integer id = ids.remove(maintenance);
+        if (id != null)
+            subtract(id);
         fireIntervalRemoved(maintenance, index, index);
     }
 
     public void removeAllMaintenances() {
         int size = getSize();
-        maintenances.clear();
+        maintenances = PersistentVector.empty();
+        ids.clear();
+        nextId = 0;
+        records.clear();
+        aggregates.clear();
+        series.clear();
+        rollup.clear();
         fireIntervalRemoved(this, 0, size);
     }
 
+    /**
+     * @return the maintenances as an immutable list, which is cheap to
+     *         get and can be read on other threads while the maintenances
+     *         are changed
+     */
     public List<Maintenance> getMaintenances() {
-        return new ArrayList<Maintenance>(maintenances);
+        return maintenances;
+    }
+
+
+    private void aggregate(Maintenance maintenance) {
+        Integer id = ids.get(maintenance);
+        if (id != null)
+            subtract(id);
+        else {
+            id = nextId++;
+            ids.put(maintenance, id);
+        }
+
+        records.put(id, EpochDays.toEpochDay(maintenance.getDate()), maintenance.getMileage(),
+                maintenance.getCurrency().toEuro(maintenance.getCosts()), 0.0);
+        aggregates.add(id);
+        series.add(records, id);
+        rollup.add(records, id);
+    }
+
+    private void subtract(int id) {
+        aggregates.remove(id);
+        series.remove(records, id);
+        rollup.remove(records, id);
+        records.remove(id);
+    }
+
+    /**
+     * @return the costs in EUR of the maintenances between the dates
+     */
+    public double getTotalCosts(Calendar from, Calendar to) {
+        return series.getCosts(EpochDays.toEpochDay(from), EpochDays.toEpochDay(to));
     }
 
+    /**
+     * @return the costs in EUR of the maintenances by their day
+     */
+    public CostTimeSeries getTimeSeries() {
+        return series;
+    }
+
+    /**
+     * @return the costs in EUR of the maintenances by month and year
+     */
+    public CostRollup getRollup() {
+        return rollup;
+    }
 
     /**
      * Gets this least minimum mileage of a maintenance.
      */
     public int getMinimumMileage() {
-        int minimum = Integer.MAX_VALUE;
-        for (Maintenance maintenance : maintenances) {
-            if (maintenance.getMileage() < minimum) {
-                minimum = maintenance.getMileage();
-            }
-        }
-        return (minimum == Integer.MAX_VALUE) ? 0 : minimum;
+        return aggregates.getMinimumMileage();
     }
 
     /**
      * Gets this least maximum mileage of a maintenance.
      */
     public int getMaximumMileage() {
-        int maximum = Integer.MIN_VALUE;
-        for (Maintenance maintenance : maintenances) {
-            if (maintenance.getMileage() > maximum)
-                maximum = maintenance.getMileage();
-        }
-        return (maximum == Integer.MIN_VALUE) ? 0 : maximum;
+        return aggregates.getMaximumMileage();
     }
 
     /**
      * Gets the total maintenance costs.
      */
     public double getTotalCosts() {
-        double costs = 0.0;
-        for (Maintenance maintenance : maintenances) {
-            Currency currency = maintenance.getCurrency();
-            costs += currency.toEuro(maintenance.getCosts());
-        }
-        return costs;
+        return aggregates.getTotalCosts();
     }
 
 
@@ -112,26 +209,14 @@ public class MaintenanceCosts extends AbstractListModel implements ListModel {
      * Gets the earliest maintenance date.
      */
     public Calendar getEarliestDate() {
-        Calendar minimum = new GregorianCalendar();
-        for (Maintenance maintenance : maintenances) {
-            if (maintenance.getDate().before(minimum)) {
-                minimum = maintenance.getDate();
-            }
-        }
-        return minimum;
+        return aggregates.getEarliestDate();
     }
 
     /**
      * Gets the latest maintenance date.
      */
     public Calendar getLatestDate() {
-        Calendar maximum = getEarliestDate();
-        for (Maintenance maintenance : maintenances) {
-            if (maintenance.getDate().after(maximum)) {
-                maximum = maintenance.getDate();
-            }
-        }
-        return maximum;
+        return aggregates.getLatestDate();
     }
 
     //-- storage support ------------------------------------------------
@@ -211,22 +296,25 @@ public class MaintenanceCosts extends AbstractListModel implements ListModel {
      * Read in Amiga CarCosts format.
      */
     public void read(BufferedReader reader) throws IOException {
-        removeAllMaintenances();
-
-        for (; ;) {
-            try {
-                Maintenance maintenance = readMaintenance(reader);
-                if (maintenance == null)
-                    break;
-                else
-                    addMaintenance(maintenance);
-            } catch (Exception e) {
-                e.printStackTrace();
-                throw new IOException("Invalid maintenance");
+        beginUpdate();
+        try {
+            removeAllMaintenances();
+
+            for (; ;) {
+                try {
+                    Maintenance maintenance = readMaintenance(reader);
+                    if (maintenance == null)
+                        break;
+                    else
+                        addMaintenance(maintenance);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    throw new IOException("Invalid maintenance");
+                }
             }
+        } finally {
+            endUpdate();
         }
-
-        fireIntervalAdded(this, 0, getSize());
     }
 
     public void writeAmigaCosts(PrintWriter writer) {
@@ -240,6 +328,11 @@ public class MaintenanceCosts extends AbstractListModel implements ListModel {
     }
 
 
+    /**
+     * The columns of the CSV export.
+     */
+    static final String[] CSV_COLUMNS = {"Datum", "Kilometerstand", "Kosten", "Währung", "Beschreibung", "Notizen"};
+
     public void writeCsv(PrintWriter writer) {
         writer.println("Datum;Kilometerstand;Kosten;Währung;Beschreibung;Notizen");
         for (Maintenance maintenance : maintenances) {
@@ -254,7 +347,16 @@ public class MaintenanceCosts extends AbstractListModel implements ListModel {
 
     // -- member variables ----------------------------------------------
 
-    private List<Maintenance> maintenances;
+    private volatile PersistentVector<Maintenance> maintenances;
+    // the ids of the values in the records, they are reused only after all maintenances are removed
+    private Map<Maintenance, Integer> ids = new IdentityHashMap<Maintenance, Integer>();
+    private int nextId = 0;
+    private CostRecords records = new CostRecords();
+    private CostAggregates aggregates = new CostAggregates(records);
+    private CostTimeSeries series = new CostTimeSeries();
+    private CostRollup rollup = new CostRollup();
+    private int updateLevel = 0;
+    private boolean updatePending = false;
 }
 
 
@@ -8,47 +8,50 @@
 
 package slash.carcosts;
 
+import slash.gui.toolkit.ColumnRow;
+
 import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import java.awt.*;
 
 /**
  * A specialised renderer for the list.
+ * <p>
+ * The texts of the rows are cached until their maintenance changes.
  *
  * @author Christian Pesch
  */
 public class MaintenanceListRenderer implements ListCellRenderer<Maintenance> {
     private static final int MAXIMUM_LABEL_LENGTH = 18;
+    private static final String PROTOTYPE = "000.000,00 EUR";
 
-    private JPanel panel;
-    private JLabel label1;
-    private JLabel label2;
-    private JLabel label3;
-    private JLabel label4;
-    private JLabel label5;
+    private ColumnRow row;
 
     /**
      * Initialize.
      */
-    public MaintenanceListRenderer() {
-        panel = new JPanel();
-        panel.setLayout(new GridLayout(1, 5));
-
-        label1 = new JLabel();
-        panel.add(label1);
-
-        label2 = new JLabel();
-        label2.setHorizontalAlignment(SwingConstants.RIGHT);
-        panel.add(label2);
+    public MaintenanceListRenderer(MaintenanceCosts maintenances) {
+        this.maintenances = maintenances;
+        maintenances.addListDataListener(maintenancesListener);
 
-        label3 = new JLabel();
-        panel.add(label3);
+        row = new ColumnRow(new int[]{SwingConstants.LEFT, SwingConstants.RIGHT,
+                SwingConstants.LEFT, SwingConstants.LEFT, SwingConstants.RIGHT}, PROTOTYPE);
+        row.setFont(UIManager.getFont("Label.font"));
+    }
 
-        label4 = new JLabel();
-        panel.add(label4);
+    /**
+     * Get the height of a row, which is the fixed cell height of the list.
+     */
+    public int getRowHeight() {
+        return row.getRowHeight();
+    }
 
-        label5 = new JLabel();
-        label5.setHorizontalAlignment(SwingConstants.RIGHT);
-        panel.add(label5);
+    /**
+     * Get the width of a row, which is the fixed cell width of the list.
+     */
+    public int getRowWidth() {
+        return row.getRowWidth();
     }
 
     /**
@@ -59,23 +62,71 @@ public class MaintenanceListRenderer implements ListCellRenderer<Maintenance> {
                                                   int index,
                                                   boolean isSelected,
                                                   boolean cellHasFocus) {
-        label1.setText(RendererHelper.formatDate(maintenance.getDate()));
-        label2.setText(maintenance.getMileage() + " " +
+        Object event = CarEvents.beginRender();
+
+        String[] texts = rows.get(maintenance);
+        boolean formatted = texts == null;
+        if (formatted) {
+            texts = format(maintenance);
+            rows.put(maintenance, texts);
+        }
+
+        row.setTexts(texts);
+
+        row.setBackground(isSelected ? Color.red : Color.white);
+        row.setForeground(isSelected ? Color.white : Color.black);
+
+        CarEvents.commitRender(event, "maintenance", index, formatted);
+        return row;
+    }
+
+    private String[] format(Maintenance maintenance) {
+        String[] texts = new String[5];
+        texts[0] = RendererHelper.formatDate(maintenance.getDate());
+        texts[1] = maintenance.getMileage() + " " +
                 CarCosts.getBundle().getString("maintenancecost-mileage-unit-label") +
-                "      "); // spacer
+                "      "; // spacer
 
         String str = "  " + maintenance.getTitle();
-        label3.setText(str.substring(0, Math.min(str.length(), MAXIMUM_LABEL_LENGTH)));
+        texts[2] = str.substring(0, Math.min(str.length(), MAXIMUM_LABEL_LENGTH));
 
         str = "   " + maintenance.getNote();
-        label4.setText(str.substring(0, Math.min(str.length(), MAXIMUM_LABEL_LENGTH)));
+        texts[3] = str.substring(0, Math.min(str.length(), MAXIMUM_LABEL_LENGTH));
 
-        label5.setText(RendererHelper.formatNumber(maintenance.getCosts()) + " " +
-                RendererHelper.formatCurrency(maintenance.getCurrency()));
-
-        panel.setBackground(isSelected ? Color.red : Color.white);
-        panel.setForeground(isSelected ? Color.white : Color.black);
+        texts[4] = RendererHelper.formatNumber(maintenance.getCosts()) + " " +
+                RendererHelper.formatCurrency(maintenance.getCurrency());
+        return texts;
+    }
 
-        return panel;
+    /**
+     * Stop listening to the maintenances.
+     */
+    public void detach() {
+        maintenances.removeListDataListener(maintenancesListener);
+        rows.clear();
     }
+
+    private MaintenanceCosts maintenances;
+    private RowCache rows = new RowCache();
+
+    private ListDataListener maintenancesListener = new ListDataListener() {
+        public void intervalAdded(ListDataEvent e) {
+        }
+
+        public void intervalRemoved(ListDataEvent e) {
+            changed(e);
+        }
+
+        public void contentsChanged(ListDataEvent e) {
+            changed(e);
+        }
+
+        private void changed(ListDataEvent e) {
+            // single maintenances are the source of their events
+            if (e.getSource() instanceof Maintenance)
+                rows.remove(e.getSource());
+            else
+                rows.clear();
+        }
+    };
 }
@@ -0,0 +1,249 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.gui.GridBagHelper;
+import slash.gui.model.TypedResourceBundle;
+import slash.gui.toolkit.ActionManager;
+import slash.gui.toolkit.ListenerManager;
+import slash.gui.toolkit.ManagedJPanel;
+import slash.gui.toolkit.RegistredJFrame;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.List;
+
+/**
+ * This is a view of the costs by year and month.
+ *
+ * @author Christian Pesch
+ */
+
+public class PeriodCostView extends ManagedJPanel {
+
+    public PeriodCostView(Car car) {
+        super();
+        this.car = car;
+
+        // initialization
+        TypedResourceBundle bundle = CarCosts.getBundle();
+
+        ActionManager actionMgr = new ActionManager(CarCosts.getActionManager());
+        listenerMgr = new ListenerManager(bundle, actionMgr);
+        setListenerManager(listenerMgr);
+        actionMgr.addActions(getActions());
+
+        menuBar = createMenuBar();
+
+        JPanel headerPanel = new JPanel();
+        headerPanel.setLayout(new GridLayout(1, 7));
+        headerPanel.add(new JLabel(bundle.getString("periodcost-period-label")));
+        headerPanel.add(new JLabel(bundle.getString("fuelcost-quantity-label"),
+                SwingConstants.RIGHT));
+        headerPanel.add(new JLabel(bundle.getString("periodcost-fuel-label"),
+                SwingConstants.RIGHT));
+        headerPanel.add(new JLabel(bundle.getString("periodcost-maintenance-label"),
+                SwingConstants.RIGHT));
+        headerPanel.add(new JLabel(bundle.getString("periodcost-total-label"),
+                SwingConstants.RIGHT));
+        headerPanel.add(new JLabel(bundle.getString("fuelcost-difference-label"),
+                SwingConstants.RIGHT));
+        headerPanel.add(new JLabel(bundle.getString("fuelcost-average-quantity-label"),
+                SwingConstants.RIGHT));
+
+        GridBagLayout gridbag = new GridBagLayout();
+
+        JScrollPane scroller = new
+                JScrollPane(ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+
+        // increase speed of scrolling to a factor of 8
+        scroller.getVerticalScrollBar().setUnitIncrement(80);
+        scroller.getHorizontalScrollBar().setUnitIncrement(80);
+
+        periodList = new JList();
+        periodList.setModel(periods);
+        PeriodListRenderer renderer = new PeriodListRenderer(car);
+        periodList.setCellRenderer(renderer);
+        periodList.setFixedCellHeight(renderer.getRowHeight());
+        periodList.setFixedCellWidth(renderer.getRowWidth());
+        scroller.getViewport().add(periodList);
+
+        JPanel actionPanel = new JPanel();
+        actionPanel.setLayout(gridbag);
+        GridBagHelper.constrain(actionPanel, listenerMgr.createJButton("close-window"), 0, 0, 1, 1,
+                GridBagConstraints.HORIZONTAL, GridBagConstraints.EAST,
+                1.0, 0.0, 0, 0, 0, 0);
+
+        // set layout for this panel
+        this.setLayout(gridbag);
+        GridBagHelper.constrain(this, headerPanel, 0, 1, 1, 1,
+                GridBagConstraints.HORIZONTAL, GridBagConstraints.CENTER,
+                1.0, 0.0, 0, 0, 0, 0);
+        GridBagHelper.constrain(this, scroller, 0, 2, 1, 1,
+                GridBagConstraints.BOTH, GridBagConstraints.CENTER,
+                4.0, 4.0, 0, 0, 0, 0);
+        GridBagHelper.constrain(this, actionPanel, 0, 3, 1, 1,
+                GridBagConstraints.HORIZONTAL, GridBagConstraints.CENTER,
+                1.0, 0.0, 0, 0, 0, 0);
+
+        car.getFuelCosts().addListDataListener(costsListener);
+        car.getMaintenanceCosts().addListDataListener(costsListener);
+        car.getCurrencyModel().addChangeListener(currencyListener);
+        updatePeriods();
+    }
+
+    /**
+     * Gets the actions for this view.
+     *
+     * @return the actions for the view
+     */
+    public Action[] getActions() {
+        if (actions == null) {
+            actions = new Action[]{
+                    new CloseWindowAction()
+            };
+        }
+        return actions;
+    }
+
+    /**
+     * Sets the frame of the view.
+     *
+     * @param frame in which the view is displayed
+     */
+    public void setFrame(RegistredJFrame frame) {
+        this.frame = frame;
+        frame.setJMenuBar(menuBar);
+
+        // by default, let the program handle the close operation
+        frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+
+        // set our close operation
+        frame.addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                closeWindow();
+            }
+        });
+
+        registerKeyboardAction(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                closeWindow();
+            }
+        }, KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT);
+    }
+
+    /**
+     * Create the menu bar for this view
+     */
+    private JMenuBar createMenuBar() {
+        JMenuBar menuBar = new JMenuBar();
+
+        JMenu menu = listenerMgr.createJMenu("file-menu");
+        menu.add(listenerMgr.createJMenuItem("close-window"));
+        menuBar.add(menu);
+
+        return menuBar;
+    }
+
+    /**
+     * Close the frame.
+     */
+    private void closeWindow() {
+        car.getFuelCosts().removeListDataListener(costsListener);
+        car.getMaintenanceCosts().removeListDataListener(costsListener);
+        car.getCurrencyModel().removeChangeListener(currencyListener);
+
+        // when there's only one frame, call exit action
+        if (CarCosts.getFrameManager().getFrameCount() == 1) {
+            CarCosts.getActionManager().getAction("exit").actionPerformed(null);
+        } else {
+            frame.dispose();
+        }
+    }
+
+    /**
+     * Fill the list with each year followed by its months. The figures
+     * are looked up in the rollups of the car, so this doesn't depend
+     * on the number of fillings and maintenances.
+     */
+    private void updatePeriods() {
+        periods.clear();
+        List<PeriodFigures> months = car.getMonthlyFigures();
+        int year = Integer.MIN_VALUE;
+        for (PeriodFigures month : months) {
+            if (month.getYear() != year) {
+                year = month.getYear();
+                periods.addElement(car.getFigures(year));
+            }
+            periods.addElement(month);
+        }
+    }
+
+    // --- Inner classes --------------------------------------------
+
+    class CostsChangeListener implements ListDataListener {
+        public void intervalAdded(ListDataEvent e) {
+            updatePeriods();
+        }
+
+        public void intervalRemoved(ListDataEvent e) {
+            updatePeriods();
+        }
+
+        public void contentsChanged(ListDataEvent e) {
+            updatePeriods();
+        }
+    }
+
+    // --- Inner classes for actions --------------------------------
+
+    /**
+     * An action, which closes a window.
+     */
+    public class CloseWindowAction extends AbstractAction {
+
+        public CloseWindowAction() {
+            super("close-window");
+        }
+
+        /**
+         * Process the event.
+         *
+         * @param e the action event
+         */
+        public void actionPerformed(ActionEvent e) {
+            closeWindow();
+        }
+    }
+
+    // --- member variables ------------------------------------
+
+    private RegistredJFrame frame;
+    private JMenuBar menuBar;
+    private JList periodList;
+    private DefaultListModel periods = new DefaultListModel();
+
+    private ListenerManager listenerMgr;
+    private Action[] actions = null;
+
+    private Car car;
+
+    private ListDataListener costsListener = new CostsChangeListener();
+    private ChangeListener currencyListener = new ChangeListener() {
+        public void stateChanged(ChangeEvent e) {
+            periodList.repaint();
+        }
+    };
+}
@@ -0,0 +1,90 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+/**
+ * The figures of a car in a month or a year. All costs are in EUR.
+ * <p>
+ * The kilometers of a period are those driven up to the fillings in
+ * the period.
+ *
+ * @author Christian Pesch
+ */
+
+public class PeriodFigures {
+    public static final int WHOLE_YEAR = -1;
+
+    public PeriodFigures(int year, int month, CostRollup.Sums fuel, CostRollup.Sums maintenance) {
+        this.year = year;
+        this.month = month;
+        this.fuelQuantity = fuel != null ? fuel.getQuantity() : 0.0;
+        this.fuelCosts = fuel != null ? fuel.getCosts() : 0.0;
+        this.distance = fuel != null ? fuel.getDistance() : 0.0;
+        this.maintenanceCosts = maintenance != null ? maintenance.getCosts() : 0.0;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * @return the month starting with 0 like in Calendar or
+     *         {@link #WHOLE_YEAR} for the figures of a year
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    public boolean isWholeYear() {
+        return month == WHOLE_YEAR;
+    }
+
+    public double getFuelQuantity() {
+        return fuelQuantity;
+    }
+
+    public double getFuelCosts() {
+        return fuelCosts;
+    }
+
+    public double getMaintenanceCosts() {
+        return maintenanceCosts;
+    }
+
+    public double getTotalCosts() {
+        return fuelCosts + maintenanceCosts;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return the fuel quantity per 100 km or 0 if no kilometers
+     *         were driven in the period
+     */
+    public double getAverageQuantity() {
+        return distance > 0.0 ? fuelQuantity / distance * 100.0 : 0.0;
+    }
+
+    public String toString() {
+        return "PeriodFigures[year=" + year + ", month=" + month + ", fuelQuantity=" + fuelQuantity +
+                ", fuelCosts=" + fuelCosts + ", maintenanceCosts=" + maintenanceCosts +
+                ", distance=" + distance + "]";
+    }
+
+    // --- member variables ------------------------------------
+
+    private final int year;
+    private final int month;
+    private final double fuelQuantity;
+    private final double fuelCosts;
+    private final double maintenanceCosts;
+    private final double distance;
+}
@@ -0,0 +1,98 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import slash.gui.toolkit.ColumnRow;
+
+import javax.swing.*;
+import java.awt.*;
+import java.text.DateFormatSymbols;
+
+/**
+ * A specialised renderer for the list of months and years.
+ *
+ * @author Christian Pesch
+ */
+public class PeriodListRenderer implements ListCellRenderer<PeriodFigures> {
+    private Car car;
+    private ColumnRow row;
+    private String[] texts = new String[7];
+    private Font plainFont;
+    private Font boldFont;
+    private String[] monthNames = new DateFormatSymbols().getMonths();
+
+    /**
+     * Initialize.
+     */
+    public PeriodListRenderer(Car car) {
+        this.car = car;
+
+        int[] alignments = new int[texts.length];
+        for (int i = 0; i < alignments.length; i++)
+            alignments[i] = i > 0 ? SwingConstants.RIGHT : SwingConstants.LEFT;
+        row = new ColumnRow(alignments, "000.000,00 EUR");
+        row.setTexts(texts);
+
+        Font font = UIManager.getFont("Label.font");
+        plainFont = font.deriveFont(Font.PLAIN);
+        boldFont = font.deriveFont(Font.BOLD);
+        row.setFont(boldFont);
+    }
+
+    /**
+     * Get the height of a row, which is the fixed cell height of the list.
+     */
+    public int getRowHeight() {
+        return row.getRowHeight();
+    }
+
+    /**
+     * Get the width of a row, which is the fixed cell width of the list.
+     */
+    public int getRowWidth() {
+        return row.getRowWidth();
+    }
+
+    /**
+     * Render one entry.
+     */
+    public Component getListCellRendererComponent(JList list,
+                                                  PeriodFigures figures,
+                                                  int index,
+                                                  boolean isSelected,
+                                                  boolean cellHasFocus) {
+        Object event = CarEvents.beginRender();
+
+        Currency currency = car.getCurrency();
+        String currencyName = RendererHelper.formatCurrency(currency);
+
+        texts[0] = figures.isWholeYear() ? Integer.toString(figures.getYear()) :
+                "  " + monthNames[figures.getMonth()];
+        texts[1] = RendererHelper.formatNumber(figures.getFuelQuantity()) + " " +
+                CarCosts.getBundle().getString("fuelcost-quantity-unit-label");
+        texts[2] = RendererHelper.formatNumber(currency.fromEuro(figures.getFuelCosts())) + " " +
+                currencyName;
+        texts[3] = RendererHelper.formatNumber(currency.fromEuro(figures.getMaintenanceCosts())) + " " +
+                currencyName;
+        texts[4] = RendererHelper.formatNumber(currency.fromEuro(figures.getTotalCosts())) + " " +
+                currencyName;
+        texts[5] = Math.round(figures.getDistance()) + " " +
+                CarCosts.getBundle().getString("fuelcost-mileage-unit-label");
+        texts[6] = figures.getDistance() > 0.0 ?
+                RendererHelper.formatNumber(figures.getAverageQuantity()) + " " +
+                        CarCosts.getBundle().getString("fuelcost-quantity-unit-label") : "-";
+
+        row.setFont(figures.isWholeYear() ? boldFont : plainFont);
+        row.setBackground(isSelected ? Color.red : Color.white);
+        row.setForeground(isSelected ? Color.white : Color.black);
+
+        CarEvents.commitRender(event, "period", index, true);
+        return row;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+/**
+ * Observes the reading of a car and may cancel it. The methods are
+ * called on the thread which reads the car.
+ *
+ * @author Christian Pesch
+ */
+
+public interface ReadMonitor {
+
+    /**
+     * Called from time to time while reading.
+     *
+     * @param position the number of bytes read so far
+     * @param length   the number of bytes of the file
+     * @param records  the number of fillings and maintenances read so far
+     */
+    void progress(long position, long length, int records);
+
+    /**
+     * @return true if reading should stop with an
+     *         <code>InterruptedIOException</code>
+     */
+    boolean isCanceled();
+}
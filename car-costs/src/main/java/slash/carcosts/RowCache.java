@@ -0,0 +1,64 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the formatted texts of the rows of a list by their record, so
+ * that painting a row again does no formatting. When the cache is
+ * full, the row used least recently is dropped.
+ *
+ * @author Christian Pesch
+ */
+
+public class RowCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    public RowCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public RowCache(final int maximumSize) {
+        rows = new LinkedHashMap<Object, String[]>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Object, String[]> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * @return the texts of the row of the record or <code>null</code>
+     *         if they are not cached
+     */
+    public String[] get(Object record) {
+        return rows.get(record);
+    }
+
+    public void put(Object record, String[] texts) {
+        rows.put(record, texts);
+    }
+
+    public void remove(Object record) {
+        rows.remove(record);
+    }
+
+    public void clear() {
+        rows.clear();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    // --- member variables ------------------------------------
+
+    private Map<Object, String[]> rows;
+}
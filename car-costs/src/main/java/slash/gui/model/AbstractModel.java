@@ -3,10 +3,13 @@ package slash.gui.model;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.EventListenerList;
+import java.util.Collections;
 
 /**
  * An AbstractModel maintains a ListenerList of ChangeListeners and
- * provides some methods for adding and notifying
+ * provides some methods for adding and notifying. Within a
+ * {@link ModelTransaction} the notification is deferred until the
+ * transaction ends.
  */
 
 public abstract class AbstractModel implements Cloneable {
@@ -35,13 +38,50 @@ public abstract class AbstractModel implements Cloneable {
         listenerList.remove(ChangeListener.class, l);
     }
 
+    /**
+     * Adds a CompoundChangeListener to the model.
+     */
+    public void addCompoundChangeListener(CompoundChangeListener l) {
+        listenerList.add(CompoundChangeListener.class, l);
+    }
+
+    /**
+     * Removes a CompoundChangeListener from the model.
+     */
+    public void removeCompoundChangeListener(CompoundChangeListener l) {
+        listenerList.remove(CompoundChangeListener.class, l);
+    }
+
+    CompoundChangeListener[] getCompoundChangeListeners() {
+        return listenerList.getListeners(CompoundChangeListener.class);
+    }
+
+    /**
+     * Notify the listeners of a change of the model or record the
+     * change if a transaction is open. Subclasses call this only if
+     * the value really changed.
+     */
+    protected void fireStateChanged() {
+        if (ModelTransaction.record(this))
+            return;
+
+        notifyChangeListeners();
+
+        CompoundChangeListener[] listeners = getCompoundChangeListeners();
+        if (listeners.length > 0) {
+            CompoundChangeEvent event = new CompoundChangeEvent(this, Collections.<AbstractModel>singleton(this));
+            for (int i = listeners.length - 1; i >= 0; i--)
+                listeners[i].modelsChanged(event);
+        }
+    }
+
     /**
      * Notify all listeners that have registered interest for
      * notification on this event type.  The event instance
      * is lazily created using the parameters passed into
      * the fire method.
      */
-    protected void fireStateChanged() {
+    void notifyChangeListeners() {
         // Guaranteed to return a non-null array
         Object[] listeners = listenerList.getListenerList();
         // Process the listeners last to first, notifying
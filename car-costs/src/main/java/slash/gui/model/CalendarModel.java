@@ -35,12 +35,15 @@ public class CalendarModel extends AbstractModel {
     }
 
     /**
-     * Set the value to hold.
+     * Set the value to hold. Setting the same calendar again notifies
+     * the listeners since it may have been modified in place.
      */
     public void setValue(Calendar newValue) {
-        this.value = newValue;
+        if (value == newValue || value == null || !value.equals(newValue)) {
+            this.value = newValue;
 
-        fireStateChanged();
+            fireStateChanged();
+        }
     }
 
     public String toString() {
@@ -0,0 +1,30 @@
+package slash.gui.model;
+
+import java.util.Collections;
+import java.util.EventObject;
+import java.util.Set;
+
+/**
+ * A CompoundChangeEvent holds the models that changed within a
+ * {@link ModelTransaction}.
+ */
+
+public class CompoundChangeEvent extends EventObject {
+    public CompoundChangeEvent(Object source, Set<AbstractModel> models) {
+        super(source);
+        this.models = Collections.unmodifiableSet(models);
+    }
+
+    /**
+     * Get the changed models in the order of their first change.
+     */
+    public Set<AbstractModel> getModels() {
+        return models;
+    }
+
+    public boolean contains(AbstractModel model) {
+        return models.contains(model);
+    }
+
+    private Set<AbstractModel> models;
+}
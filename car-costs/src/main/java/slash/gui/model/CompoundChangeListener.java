@@ -0,0 +1,12 @@
+package slash.gui.model;
+
+import java.util.EventListener;
+
+/**
+ * A CompoundChangeListener is notified once with all models it listens
+ * to which changed within a {@link ModelTransaction}.
+ */
+
+public interface CompoundChangeListener extends EventListener {
+    void modelsChanged(CompoundChangeEvent e);
+}
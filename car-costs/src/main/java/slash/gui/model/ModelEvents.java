@@ -0,0 +1,61 @@
+package slash.gui.model;
+
+import slash.util.FlightRecorderSupport;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Flight Recorder events of the models. They are begun and committed
+ * with the methods of this class, which do nothing on a runtime without
+ * the Flight Recorder.
+ */
+final class ModelEvents {
+    private static final boolean AVAILABLE = FlightRecorderSupport.isAvailable();
+
+    private ModelEvents() {
+    }
+
+    static Object beginSort() {
+        if (!AVAILABLE)
+            return null;
+        SortEvent event = new SortEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitSort(Object handle, Class<?> model, int size, boolean radix) {
+        if (handle == null)
+            return;
+        SortEvent event = (SortEvent) handle;
+        if (event.shouldCommit()) {
+            event.model = model;
+            event.size = size;
+            event.radix = radix;
+            event.commit();
+        }
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * Sorting all entries of a sorting list model.
+     */
+    @Name("slash.gui.model.Sort")
+    @Label("Sort List Model")
+    @Category({"CarCosts", "Models"})
+    @StackTrace(false)
+    static class SortEvent extends Event {
+        @Label("Model")
+        Class<?> model;
+
+        @Label("Size")
+        int size;
+
+        @Label("Radix Sort")
+        boolean radix;
+    }
+}
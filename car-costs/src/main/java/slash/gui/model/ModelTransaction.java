@@ -0,0 +1,98 @@
+package slash.gui.model;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A ModelTransaction collects the changes of models on the current
+ * thread and publishes them when the outermost transaction ends:
+ * each changed model notifies its ChangeListeners once and each
+ * CompoundChangeListener receives all changed models it listens to
+ * in one event.
+ * <p>
+ * Transactions nest, use them like
+ * <pre>
+ *     ModelTransaction.begin();
+ *     try {
+ *         ...
+ *     } finally {
+ *         ModelTransaction.end();
+ *     }
+ * </pre>
+ */
+
+public class ModelTransaction {
+    private static final ThreadLocal<ModelTransaction> current = new ThreadLocal<ModelTransaction>();
+
+    /**
+     * Begin a transaction or a nested scope of the current one.
+     */
+    public static void begin() {
+        ModelTransaction transaction = current.get();
+        if (transaction == null) {
+            transaction = new ModelTransaction();
+            current.set(transaction);
+        }
+        transaction.depth++;
+    }
+
+    /**
+     * End a scope and publish the changes if it is the outermost.
+     */
+    public static void end() {
+        ModelTransaction transaction = current.get();
+        if (transaction == null)
+            throw new IllegalStateException("no transaction");
+        if (--transaction.depth > 0)
+            return;
+
+        current.remove();
+        transaction.publish();
+    }
+
+    /**
+     * Return true if a transaction is open on the current thread.
+     */
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * Record the change of the model if a transaction is open.
+     *
+     * @return true if the change was recorded and the model must
+     *         not notify its listeners now
+     */
+    static boolean record(AbstractModel model) {
+        ModelTransaction transaction = current.get();
+        if (transaction == null)
+            return false;
+        transaction.changed.add(model);
+        return true;
+    }
+
+    private void publish() {
+        Map<CompoundChangeListener, Set<AbstractModel>> compound =
+                new LinkedHashMap<CompoundChangeListener, Set<AbstractModel>>();
+        for (AbstractModel model : changed) {
+            model.notifyChangeListeners();
+
+            for (CompoundChangeListener listener : model.getCompoundChangeListeners()) {
+                Set<AbstractModel> models = compound.get(listener);
+                if (models == null) {
+                    models = new LinkedHashSet<AbstractModel>();
+                    compound.put(listener, models);
+                }
+                models.add(model);
+            }
+        }
+
+        for (Map.Entry<CompoundChangeListener, Set<AbstractModel>> entry : compound.entrySet())
+            entry.getKey().modelsChanged(new CompoundChangeEvent(this, entry.getValue()));
+    }
+
+    private int depth = 0;
+    private Set<AbstractModel> changed = new LinkedHashSet<AbstractModel>();
+}
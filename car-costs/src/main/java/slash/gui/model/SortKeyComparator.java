@@ -0,0 +1,17 @@
+package slash.gui.model;
+
+import java.util.Comparator;
+
+/**
+ * A SortKeyComparator orders its objects by a primitive key, so that
+ * sorting list models may compare and sort the keys instead of calling
+ * the comparator for each pair of objects.
+ */
+
+public interface SortKeyComparator extends Comparator {
+    /**
+     * Get the key of the object. Objects with smaller keys come first,
+     * objects with equal keys are equal for the comparator.
+     */
+    long getSortKey(Object o);
+}
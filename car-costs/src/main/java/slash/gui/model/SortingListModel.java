@@ -1,6 +1,7 @@
 package slash.gui.model;
 
 import slash.util.Pair;
+import slash.util.RadixSort;
 
 import javax.swing.*;
 import javax.swing.event.ListDataEvent;
@@ -21,6 +22,8 @@ public class SortingListModel extends AbstractListModel {
     public SortingListModel(ListModel delegate, Comparator comparator) {
         this.delegate = delegate;
         this.comparator = new PairComparator(comparator);
+        if (comparator instanceof SortKeyComparator)
+            this.keyComparator = (SortKeyComparator) comparator;
 
         delegate.addListDataListener(listener);
         initializeIndices();
@@ -141,6 +144,18 @@ public class SortingListModel extends AbstractListModel {
     private synchronized void initializeIndices() {
         int size = delegate.getSize();
 
+        Object event = ModelEvents.beginSort();
+        if (keyComparator != null) {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++)
+                keys[i] = keyComparator.getSortKey(delegate.getElementAt(i));
+            indices = RadixSort.order(keys, size);
+            ModelEvents.commitSort(event, getClass(), size, keyComparator != null);
+
+            fireContentsChanged(this, 0, size);
+            return;
+        }
+
         Pair[] pairs = new Pair[size];
         for (int i = 0; i < size; i++)
             pairs[i] = new Pair(delegate.getElementAt(i), i);
@@ -151,6 +166,7 @@ public class SortingListModel extends AbstractListModel {
         for (int i = 0; i < size; i++) {
             indices[i] = (Integer) pairs[i].second;
         }
+        ModelEvents.commitSort(event, getClass(), size, keyComparator != null);
 
         // Debug.printArray(indices);
 
@@ -297,6 +313,7 @@ public class SortingListModel extends AbstractListModel {
 
     private ListModel delegate;
     private Comparator comparator;
+    private SortKeyComparator keyComparator = null;
     private int[] indices;
     private ListDataListener listener = new DelegateListener();
 }
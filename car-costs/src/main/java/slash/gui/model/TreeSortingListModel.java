@@ -0,0 +1,574 @@
+package slash.gui.model;
+
+import slash.util.RadixSort;
+
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A <code>ListModel</code> that sorts it's entries with the
+ * given <code>Comparator</code> like the <code>SortingListModel</code>.
+ * <p>
+ * The entries are kept in two treaps which share their nodes: one in the
+ * order of the delegate and one in the sorted order. Both are stored in
+ * arrays, so inserting, removing and locating an entry takes O(log n)
+ * and does not create garbage unless the arrays have to grow.
+ * <p>
+ * With a {@link SortKeyComparator} the entries are compared by their
+ * keys and the treaps are built from radix sorted keys in O(n).
+ */
+
+public class TreeSortingListModel extends AbstractListModel {
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Construct a new sorting list model.
+     */
+    public TreeSortingListModel(ListModel delegate, Comparator comparator) {
+        this.delegate = delegate;
+        this.comparator = comparator;
+        if (comparator instanceof SortKeyComparator)
+            this.keyComparator = (SortKeyComparator) comparator;
+
+        allocate(Math.max(INITIAL_CAPACITY, delegate.getSize()));
+        delegate.addListDataListener(listener);
+        initializeIndices();
+    }
+
+    /**
+     * Detach from delegate and detach all registred listeners.
+     */
+    public void detach() {
+        delegate.removeListDataListener(listener);
+
+        Object[] listeners = listenerList.getListenerList();
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            if (listeners[i] == ListDataListener.class) {
+                removeListDataListener((ListDataListener) listeners[i + 1]);
+            }
+        }
+    }
+
+    // --- ListModel interface ---------------------------------
+
+    /**
+     * Returns the value at the specified index.
+     */
+    public synchronized Object getElementAt(int index) {
+        return element[select(index)];
+    }
+
+    /**
+     * Returns the length of the list.
+     */
+    public synchronized int getSize() {
+        return size(root);
+    }
+
+    // --- helper methods --------------------------------------
+
+    private void allocate(int capacity) {
+        int from = element != null ? element.length : 0;
+
+        element = element != null ? Arrays.copyOf(element, capacity) : new Object[capacity];
+        key = key != null ? Arrays.copyOf(key, capacity) : new long[capacity];
+        priority = grow(priority, capacity);
+        left = grow(left, capacity);
+        right = grow(right, capacity);
+        parent = grow(parent, capacity);
+        size = grow(size, capacity);
+        positionLeft = grow(positionLeft, capacity);
+        positionRight = grow(positionRight, capacity);
+        positionSize = grow(positionSize, capacity);
+
+        // chain the new nodes into the free list
+        for (int i = capacity - 1; i >= from; i--) {
+            positionLeft[i] = free;
+            free = i;
+        }
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array != null ? Arrays.copyOf(array, capacity) : new int[capacity];
+    }
+
+    private int createNode(Object value) {
+        if (free == NIL)
+            allocate(element.length * 2);
+
+        int node = free;
+        free = positionLeft[node];
+
+        element[node] = value;
+        updateKey(node);
+        priority[node] = nextPriority();
+        left[node] = right[node] = parent[node] = NIL;
+        positionLeft[node] = positionRight[node] = NIL;
+        size[node] = positionSize[node] = 1;
+        return node;
+    }
+
+    private void releaseNode(int node) {
+        element[node] = null;
+        positionLeft[node] = free;
+        free = node;
+    }
+
+    private void updateKey(int node) {
+        if (keyComparator != null)
+            key[node] = keyComparator.getSortKey(element[node]);
+    }
+
+    private int compare(int node, int other) {
+        if (keyComparator != null)
+            return key[node] < key[other] ? -1 : (key[node] == key[other] ? 0 : 1);
+        return comparator.compare(element[node], element[other]);
+    }
+
+    private int nextPriority() {
+        // xorshift, good enough to balance the treaps
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    // --- sorted order ----------------------------------------
+
+    private int size(int node) {
+        return node == NIL ? 0 : size[node];
+    }
+
+    private void updateSize(int node) {
+        size[node] = 1 + size(left[node]) + size(right[node]);
+    }
+
+    /**
+     * Returns the node at the given position in the sorted order.
+     */
+    private int select(int index) {
+        if (index < 0 || index >= size(root))
+            throw new ArrayIndexOutOfBoundsException(index);
+
+        int node = root;
+        while (true) {
+            int leftSize = size(left[node]);
+            if (index < leftSize)
+                node = left[node];
+            else if (index == leftSize)
+                return node;
+            else {
+                index -= leftSize + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the node in the sorted order.
+     */
+    private int rank(int node) {
+        int rank = size(left[node]);
+        while (parent[node] != NIL) {
+            int up = parent[node];
+            if (right[up] == node)
+                rank += size(left[up]) + 1;
+            node = up;
+        }
+        return rank;
+    }
+
+    private void rotateUp(int node) {
+        int up = parent[node];
+        int grand = parent[up];
+
+        if (left[up] == node) {
+            int child = right[node];
+            left[up] = child;
+            if (child != NIL)
+                parent[child] = up;
+            right[node] = up;
+        } else {
+            int child = left[node];
+            right[up] = child;
+            if (child != NIL)
+                parent[child] = up;
+            left[node] = up;
+        }
+        parent[up] = node;
+        parent[node] = grand;
+
+        if (grand == NIL)
+            root = node;
+        else if (left[grand] == up)
+            left[grand] = node;
+        else
+            right[grand] = node;
+
+        updateSize(up);
+        updateSize(node);
+    }
+
+    /**
+     * Inserts the node behind all nodes that compare equal.
+     */
+    private void insertSorted(int node) {
+        if (root == NIL) {
+            root = node;
+            return;
+        }
+
+        int current = root;
+        while (true) {
+            size[current]++;
+            if (compare(node, current) < 0) {
+                if (left[current] == NIL) {
+                    left[current] = node;
+                    break;
+                }
+                current = left[current];
+            } else {
+                if (right[current] == NIL) {
+                    right[current] = node;
+                    break;
+                }
+                current = right[current];
+            }
+        }
+        parent[node] = current;
+
+        while (parent[node] != NIL && priority[node] < priority[parent[node]])
+            rotateUp(node);
+    }
+
+    /**
+     * Removes the node without comparing it, since its sort criteria
+     * may have been changed already.
+     */
+    private void removeSorted(int node) {
+        while (left[node] != NIL && right[node] != NIL)
+            rotateUp(priority[left[node]] < priority[right[node]] ? left[node] : right[node]);
+
+        int child = left[node] != NIL ? left[node] : right[node];
+        int up = parent[node];
+        if (child != NIL)
+            parent[child] = up;
+
+        if (up == NIL)
+            root = child;
+        else if (left[up] == node)
+            left[up] = child;
+        else
+            right[up] = child;
+
+        for (int current = up; current != NIL; current = parent[current])
+            size[current]--;
+
+        left[node] = right[node] = parent[node] = NIL;
+        size[node] = 1;
+    }
+
+    // --- delegate order --------------------------------------
+
+    private int positionSize(int node) {
+        return node == NIL ? 0 : positionSize[node];
+    }
+
+    private void updatePositionSize(int node) {
+        positionSize[node] = 1 + positionSize(positionLeft[node]) + positionSize(positionRight[node]);
+    }
+
+    /**
+     * Returns the node at the given position in the order of the delegate.
+     */
+    private int positionAt(int index) {
+        int node = positionRoot;
+        while (true) {
+            int leftSize = positionSize(positionLeft[node]);
+            if (index < leftSize)
+                node = positionLeft[node];
+            else if (index == leftSize)
+                return node;
+            else {
+                index -= leftSize + 1;
+                node = positionRight[node];
+            }
+        }
+    }
+
+    /**
+     * Splits the tree into the first index nodes, which are stored
+     * in splitLeft and the remaining nodes stored in splitRight.
+     */
+    private void split(int node, int index) {
+        if (node == NIL) {
+            splitLeft = splitRight = NIL;
+            return;
+        }
+
+        int leftSize = positionSize(positionLeft[node]);
+        if (index <= leftSize) {
+            split(positionLeft[node], index);
+            positionLeft[node] = splitRight;
+            updatePositionSize(node);
+            splitRight = node;
+        } else {
+            split(positionRight[node], index - leftSize - 1);
+            positionRight[node] = splitLeft;
+            updatePositionSize(node);
+            splitLeft = node;
+        }
+    }
+
+    private int merge(int first, int second) {
+        if (first == NIL)
+            return second;
+        if (second == NIL)
+            return first;
+
+        if (priority[first] < priority[second]) {
+            positionRight[first] = merge(positionRight[first], second);
+            updatePositionSize(first);
+            return first;
+        } else {
+            positionLeft[second] = merge(first, positionLeft[second]);
+            updatePositionSize(second);
+            return second;
+        }
+    }
+
+    private int insertPosition(int current, int index, int node) {
+        if (current == NIL)
+            return node;
+
+        if (priority[node] < priority[current]) {
+            split(current, index);
+            positionLeft[node] = splitLeft;
+            positionRight[node] = splitRight;
+            updatePositionSize(node);
+            return node;
+        }
+
+        int leftSize = positionSize(positionLeft[current]);
+        if (index <= leftSize)
+            positionLeft[current] = insertPosition(positionLeft[current], index, node);
+        else
+            positionRight[current] = insertPosition(positionRight[current], index - leftSize - 1, node);
+        updatePositionSize(current);
+        return current;
+    }
+
+    private int removePosition(int current, int index) {
+        int leftSize = positionSize(positionLeft[current]);
+        if (index == leftSize) {
+            removed = current;
+            int result = merge(positionLeft[current], positionRight[current]);
+            positionLeft[current] = positionRight[current] = NIL;
+            positionSize[current] = 1;
+            return result;
+        }
+
+        if (index < leftSize)
+            positionLeft[current] = removePosition(positionLeft[current], index);
+        else
+            positionRight[current] = removePosition(positionRight[current], index - leftSize - 1);
+        positionSize[current]--;
+        return current;
+    }
+
+    // --- mapping ---------------------------------------------
+
+    /**
+     * Initialize the mapping.
+     */
+    private synchronized void initializeIndices() {
+        for (int i = 0; i < element.length; i++)
+            element[i] = null;
+        free = NIL;
+        for (int i = element.length - 1; i >= 0; i--) {
+            positionLeft[i] = free;
+            free = i;
+        }
+        root = positionRoot = NIL;
+
+        int count = delegate.getSize();
+        Object event = ModelEvents.beginSort();
+        if (keyComparator != null) {
+            int[] nodes = new int[count];
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                nodes[i] = createNode(delegate.getElementAt(i));
+                keys[i] = key[nodes[i]];
+            }
+            positionRoot = build(nodes, positionLeft, positionRight, null, positionSize);
+
+            int[] order = RadixSort.order(keys, count);
+            for (int i = 0; i < count; i++)
+                order[i] = nodes[order[i]];
+            root = build(order, left, right, parent, size);
+        } else {
+            for (int i = 0; i < count; i++) {
+                int node = createNode(delegate.getElementAt(i));
+                positionRoot = merge(positionRoot, node);
+                insertSorted(node);
+            }
+        }
+        ModelEvents.commitSort(event, getClass(), count, keyComparator != null);
+
+        fireContentsChanged(this, 0, count);
+    }
+
+    /**
+     * Builds a treap of the nodes in the given order in O(n) by keeping
+     * the right spine on a stack.
+     *
+     * @return the root of the treap
+     */
+    private int build(int[] nodes, int[] left, int[] right, int[] parent, int[] size) {
+        int[] stack = new int[nodes.length];
+        int top = 0;
+
+        for (int node : nodes) {
+            int last = NIL;
+            while (top > 0 && priority[stack[top - 1]] > priority[node]) {
+                last = stack[--top];
+                size[last] = 1 + (left[last] == NIL ? 0 : size[left[last]]) +
+                        (right[last] == NIL ? 0 : size[right[last]]);
+            }
+
+            left[node] = last;
+            right[node] = NIL;
+            if (parent != null) {
+                if (last != NIL)
+                    parent[last] = node;
+                parent[node] = top > 0 ? stack[top - 1] : NIL;
+            }
+            if (top > 0)
+                right[stack[top - 1]] = node;
+            stack[top++] = node;
+        }
+
+        int root = top > 0 ? stack[0] : NIL;
+        while (top > 0) {
+            int node = stack[--top];
+            size[node] = 1 + (left[node] == NIL ? 0 : size[left[node]]) +
+                    (right[node] == NIL ? 0 : size[right[node]]);
+        }
+        return root;
+    }
+
+    /**
+     * Insert one entry.
+     */
+    private synchronized void insert(int index) {
+        if (index < 0 || index > positionSize(positionRoot))
+            return;
+
+        int node = createNode(delegate.getElementAt(index));
+        positionRoot = insertPosition(positionRoot, index, node);
+        insertSorted(node);
+
+        int insert = rank(node);
+        fireIntervalAdded(this, insert, insert);
+    }
+
+    /**
+     * Remove one entry.
+     */
+    private synchronized void remove(int index) {
+        if (index < 0 || index >= positionSize(positionRoot))
+            return;
+
+        positionRoot = removePosition(positionRoot, index);
+        int node = removed;
+        int remove = rank(node);
+        removeSorted(node);
+        releaseNode(node);
+
+        fireIntervalRemoved(this, remove, remove);
+    }
+
+    /**
+     * Sort one entry again.
+     */
+    private synchronized void change(int index) {
+        if (index < 0 || index >= positionSize(positionRoot))
+            return;
+
+        int node = positionAt(index);
+        int remove = rank(node);
+        removeSorted(node);
+        fireIntervalRemoved(this, remove, remove);
+
+        element[node] = delegate.getElementAt(index);
+        updateKey(node);
+        insertSorted(node);
+        int insert = rank(node);
+        fireIntervalAdded(this, insert, insert);
+    }
+
+    // --- inner classes ---------------------------------------
+
+    /**
+     * Listens at the delegate <code>ListModel</code> and
+     * starts the sort of the entries on a notification,
+     * after the sort, it notifies the delegate.
+     */
+    public class DelegateListener implements ListDataListener {
+        public void contentsChanged(ListDataEvent e) {
+            int index0 = e.getIndex0();
+            int index1 = e.getIndex1();
+
+            if (index0 != index1)
+                initializeIndices();
+            else
+                change(index0);
+        }
+
+        public void intervalAdded(ListDataEvent e) {
+            int index0 = e.getIndex0();
+            int index1 = e.getIndex1();
+
+            if (index0 != index1)
+                initializeIndices();
+            else
+                insert(index0);
+        }
+
+        public void intervalRemoved(ListDataEvent e) {
+            int index0 = e.getIndex0();
+            int index1 = e.getIndex1();
+
+            if (index0 != index1)
+                initializeIndices();
+            else
+                remove(index0);
+        }
+    }
+
+    // --- member variables ------------------------------------
+
+    private ListModel delegate;
+    private Comparator comparator;
+    private SortKeyComparator keyComparator = null;
+    private ListDataListener listener = new DelegateListener();
+
+    private Object[] element;
+    private long[] key;
+    private int[] priority;
+    private int seed = 0x2545F491;
+    private int free = NIL;
+
+    // sorted order
+    private int root = NIL;
+    private int[] left, right, parent, size;
+
+    // order of the delegate
+    private int positionRoot = NIL;
+    private int[] positionLeft, positionRight, positionSize;
+    private int splitLeft, splitRight, removed;
+}
@@ -0,0 +1,156 @@
+package slash.gui.toolkit;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Map;
+
+/**
+ * A ColumnRow paints texts into columns of equal width like a row of
+ * JLabels in a GridLayout, but without any layout or child components.
+ * It is meant to be returned by list cell renderers: the metrics of
+ * the font are cached and validation and repaints are ignored like in
+ * the DefaultListCellRenderer.
+ */
+
+public class ColumnRow extends JComponent {
+    private static final int GAP = 2;
+
+    /**
+     * Construct a row with the alignments of the columns.
+     *
+     * @param alignments <code>SwingConstants.LEFT</code>, <code>CENTER</code>
+     *                   or <code>RIGHT</code> for each column
+     * @param prototype  a text as wide as the widest column
+     */
+    public ColumnRow(int[] alignments, String prototype) {
+        this.alignments = alignments;
+        this.prototype = prototype;
+        this.texts = new String[alignments.length];
+        setOpaque(true);
+    }
+
+    public int getColumnCount() {
+        return alignments.length;
+    }
+
+    public void setText(int column, String text) {
+        texts[column] = text;
+    }
+
+    /**
+     * Set all texts of the row, the array is used as it is.
+     */
+    public void setTexts(String[] texts) {
+        this.texts = texts;
+    }
+
+    private FontMetrics getMetrics() {
+        Font font = getFont();
+        if (metrics == null || metrics.getFont() != font)
+            metrics = getFontMetrics(font);
+        return metrics;
+    }
+
+    /**
+     * Get the height of the row for the current font, which is the
+     * fixed cell height for the list.
+     */
+    public int getRowHeight() {
+        return getMetrics().getHeight() + 2 * GAP;
+    }
+
+    /**
+     * Get the width of the row for the current font, which is the
+     * fixed cell width for the list.
+     */
+    public int getRowWidth() {
+        return (getMetrics().stringWidth(prototype) + 2 * GAP) * alignments.length;
+    }
+
+    public Dimension getPreferredSize() {
+        return new Dimension(getRowWidth(), getRowHeight());
+    }
+
+    protected void paintComponent(Graphics g) {
+        int width = getWidth();
+        int height = getHeight();
+
+        if (isOpaque()) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, width, height);
+        }
+
+        if (g instanceof Graphics2D && desktopHints != null)
+            ((Graphics2D) g).addRenderingHints(desktopHints);
+
+        FontMetrics fm = getMetrics();
+        g.setFont(fm.getFont());
+        g.setColor(getForeground());
+
+        int columns = alignments.length;
+        int baseline = (height - fm.getHeight()) / 2 + fm.getAscent();
+        Shape clip = g.getClip();
+        for (int i = 0; i < columns; i++) {
+            String text = texts[i];
+            if (text == null || text.length() == 0)
+                continue;
+
+            // distribute the width like the GridLayout does
+            int left = width * i / columns;
+            int right = width * (i + 1) / columns;
+            int textWidth = fm.stringWidth(text);
+
+            int x;
+            switch (alignments[i]) {
+                case SwingConstants.RIGHT:
+                    x = right - GAP - textWidth;
+                    break;
+                case SwingConstants.CENTER:
+                    x = left + (right - left - textWidth) / 2;
+                    break;
+                default:
+                    x = left + GAP;
+            }
+
+            g.clipRect(left, 0, right - left, height);
+            g.drawString(text, x, baseline);
+            g.setClip(clip);
+        }
+    }
+
+    // --- overridden for performance like DefaultListCellRenderer ---
+
+    public void invalidate() {
+    }
+
+    public void validate() {
+    }
+
+    public void revalidate() {
+    }
+
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
+
+    public void repaint(Rectangle r) {
+    }
+
+    public void repaint() {
+    }
+
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+    }
+
+    public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {
+    }
+
+    // --- member variables ------------------------------------
+
+    private static final Map desktopHints =
+            (Map) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+
+    private int[] alignments;
+    private String prototype;
+    private String[] texts;
+    private FontMetrics metrics;
+}
@@ -0,0 +1,37 @@
+package slash.util;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Some useful methods to convert between Calendar objects and the
+ * number of days since 1970-01-01.
+ */
+public class EpochDays {
+
+    /**
+     * Returns the day of the calendar as days since 1970-01-01.
+     */
+    public static int toEpochDay(Calendar calendar) {
+        return toEpochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * Returns the day as days since 1970-01-01. Months and days out
+     * of range are rolled over like in a lenient GregorianCalendar.
+     *
+     * @param month the month starting with 0 like in Calendar
+     */
+    public static int toEpochDay(int year, int month, int day) {
+        return (int) LocalDate.of(year, 1, 1).plusMonths(month).plusDays(day - 1).toEpochDay();
+    }
+
+    /**
+     * Returns a new calendar at the start of the given day.
+     */
+    public static Calendar toCalendar(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return new GregorianCalendar(date.getYear(), date.getMonthValue() - 1, date.getDayOfMonth());
+    }
+}
@@ -1,6 +1,10 @@
 package slash.util;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Some useful methods to create and manipulate File objects
@@ -18,4 +22,30 @@ public class Files {
             return "";
         return name.substring(index + 1, name.length());
     }
+
+    private static final int DIRECT_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Returns the contents of the file. Files of at least 1 MB are read
+     * into a direct buffer outside of the heap. They are never memory
+     * mapped, since a mapping keeps the file from being replaced on some
+     * platforms until it is garbage collected.
+     */
+    public static ByteBuffer load(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File " + file + " is too large");
+
+            ByteBuffer buffer = size >= DIRECT_THRESHOLD ?
+                    ByteBuffer.allocateDirect((int) size) : ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            channel.close();
+        }
+    }
 }
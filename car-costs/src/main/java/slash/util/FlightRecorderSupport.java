@@ -0,0 +1,28 @@
+package slash.util;
+
+/**
+ * Tells whether the Flight Recorder API <code>jdk.jfr</code> is part of
+ * the runtime, which it is from Java 8u262 and 11 on. The classes of
+ * events must only be used if it is, since they don't load otherwise.
+ */
+public final class FlightRecorderSupport {
+    private static final boolean AVAILABLE = isPresent("jdk.jfr.Event");
+
+    private FlightRecorderSupport() {
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, FlightRecorderSupport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
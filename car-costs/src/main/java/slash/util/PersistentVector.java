@@ -0,0 +1,246 @@
+package slash.util;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list which shares its structure with the lists derived
+ * from it. The elements are kept in a tree of arrays with 32 elements
+ * each plus a tail array for the last elements: appending and replacing
+ * an element copy only the arrays on the path to it, removing an
+ * element in between copies the list.
+ * <p>
+ * Since a vector never changes, it can be handed out as a snapshot and
+ * read on other threads without locking.
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final Object[] EMPTY_ARRAY = new Object[0];
+    private static final PersistentVector<Object> EMPTY = new PersistentVector<Object>(0, BITS, EMPTY_ARRAY, EMPTY_ARRAY);
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Returns a vector with the elements of the collection in the order
+     * of its iterator.
+     */
+    public static <E> PersistentVector<E> of(Collection<? extends E> elements) {
+        return of(elements.toArray(), elements.size());
+    }
+
+    private static <E> PersistentVector<E> of(Object[] elements, int size) {
+        if (size == 0)
+            return empty();
+
+        // the last up to 32 elements form the tail, the others full leaves
+        int tailOffset = ((size - 1) >>> BITS) << BITS;
+        Object[] tail = copy(elements, tailOffset, size - tailOffset);
+
+        int count = tailOffset >>> BITS;
+        Object[] nodes = new Object[count];
+        for (int i = 0; i < count; i++)
+            nodes[i] = copy(elements, i << BITS, WIDTH);
+
+        // combine the nodes of each level until the root has room for them
+        int shift = BITS;
+        while (count > WIDTH) {
+            int parents = (count + MASK) >>> BITS;
+            Object[] level = new Object[parents];
+            for (int i = 0; i < parents; i++)
+                level[i] = copy(nodes, i << BITS, Math.min(WIDTH, count - (i << BITS)));
+            nodes = level;
+            count = parents;
+            shift += BITS;
+        }
+        return new PersistentVector<E>(size, shift, copy(nodes, 0, count), tail);
+    }
+
+    private static Object[] copy(Object[] array, int from, int length) {
+        Object[] result = new Object[length];
+        System.arraycopy(array, from, result, 0, length);
+        return result;
+    }
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        return (E) leafFor(index)[index & MASK];
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        if (index >= tailOffset())
+            return tail;
+
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Object[]) node[(index >>> level) & MASK];
+        return node;
+    }
+
+    /**
+     * Returns a vector with the element appended.
+     */
+    public PersistentVector<E> plus(E element) {
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = new Object[tail.length + 1];
+            System.arraycopy(tail, 0, newTail, 0, tail.length);
+            newTail[tail.length] = element;
+            return new PersistentVector<E>(size + 1, shift, root, newTail);
+        }
+
+        // the full tail moves into the tree
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[]{root, newPath(shift, tail)};
+            newShift += BITS;
+        } else
+            newRoot = pushTail(shift, root, tail);
+        return new PersistentVector<E>(size + 1, newShift, newRoot, new Object[]{element});
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+        int index = ((size - 1) >>> level) & MASK;
+        Object[] result;
+        if (index < parent.length) {
+            result = parent.clone();
+        } else {
+            result = new Object[index + 1];
+            System.arraycopy(parent, 0, result, 0, parent.length);
+        }
+
+        Object child;
+        if (level == BITS)
+            child = leaf;
+        else if (index < parent.length)
+            child = pushTail(level - BITS, (Object[]) parent[index], leaf);
+        else
+            child = newPath(level - BITS, leaf);
+        result[index] = child;
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0)
+            return leaf;
+        return new Object[]{newPath(level - BITS, leaf)};
+    }
+
+    /**
+     * Returns a vector with the element at the index replaced.
+     */
+    public PersistentVector<E> with(int index, E element) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<E>(size, shift, root, newTail);
+        }
+        return new PersistentVector<E>(size, shift, with(shift, root, index, element), tail);
+    }
+
+    private static Object[] with(int level, Object[] node, int index, Object element) {
+        Object[] result = node.clone();
+        if (level == 0)
+            result[index & MASK] = element;
+        else {
+            int child = (index >>> level) & MASK;
+            result[child] = with(level - BITS, (Object[]) node[child], index, element);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a vector without the element at the index.
+     */
+    public PersistentVector<E> without(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        Object[] elements = toArray();
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        return of(elements, size - 1);
+    }
+
+    public int indexOf(Object element) {
+        int tailOffset = tailOffset();
+        for (int i = 0; i < size; i += WIDTH) {
+            Object[] leaf = i < tailOffset ? leafFor(i) : tail;
+            for (int j = 0, c = Math.min(WIDTH, size - i); j < c; j++) {
+                if (element == null ? leaf[j] == null : element.equals(leaf[j]))
+                    return i + j;
+            }
+        }
+        return -1;
+    }
+
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        int tailOffset = tailOffset();
+        for (int i = 0; i < tailOffset; i += WIDTH)
+            System.arraycopy(leafFor(i), 0, result, i, WIDTH);
+        System.arraycopy(tail, 0, result, tailOffset, size - tailOffset);
+        return result;
+    }
+
+    /**
+     * Iterates leaf by leaf instead of looking up each element.
+     */
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index >= size)
+                    throw new NoSuchElementException();
+                if ((index & MASK) == 0)
+                    leaf = leafFor(index);
+                return (E) leaf[index++ & MASK];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            private int index = 0;
+            private Object[] leaf;
+        };
+    }
+
+    // --- member variables ------------------------------------
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+}
@@ -0,0 +1,58 @@
+package slash.util;
+
+/**
+ * Sorts primitive keys in linear time without comparing them.
+ */
+public class RadixSort {
+
+    /**
+     * Returns the positions of the keys in ascending order of the keys.
+     * Positions of equal keys keep their order.
+     */
+    public static int[] order(long[] keys, int count) {
+        long[] sortedKeys = new long[count];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            sortedKeys[i] = keys[i];
+            order[i] = i;
+        }
+
+        long[] keyBuffer = new long[count];
+        int[] orderBuffer = new int[count];
+        int[] counts = new int[257];
+
+        // least significant byte first, each pass is stable
+        for (int shift = 0; shift < 64; shift += 8) {
+            for (int i = 0; i < counts.length; i++)
+                counts[i] = 0;
+            for (int i = 0; i < count; i++)
+                counts[digit(sortedKeys[i], shift) + 1]++;
+
+            // skip bytes which are equal for all keys
+            if (count == 0 || counts[digit(sortedKeys[0], shift) + 1] == count)
+                continue;
+
+            for (int i = 1; i < counts.length; i++)
+                counts[i] += counts[i - 1];
+            for (int i = 0; i < count; i++) {
+                int position = counts[digit(sortedKeys[i], shift)]++;
+                keyBuffer[position] = sortedKeys[i];
+                orderBuffer[position] = order[i];
+            }
+
+            long[] keySwap = sortedKeys;
+            sortedKeys = keyBuffer;
+            keyBuffer = keySwap;
+            int[] orderSwap = order;
+            order = orderBuffer;
+            orderBuffer = orderSwap;
+        }
+        return order;
+    }
+
+    private static int digit(long key, int shift) {
+        int digit = (int) (key >>> shift) & 0xFF;
+        // flip the sign bit so that negative keys come first
+        return shift == 56 ? digit ^ 0x80 : digit;
+    }
+}
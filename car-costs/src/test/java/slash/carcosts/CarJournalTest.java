@@ -0,0 +1,292 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Saves cars to a snapshot and its journal and compares them with the
+ * cars read back, also after crashes which leave a damaged journal or
+ * a compaction which didn't complete.
+ *
+ * @author Christian Pesch
+ */
+
+public class CarJournalTest {
+    private static final Currency EUR = Currency.getCurrency("EUR");
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("carcosts").toFile();
+        file = new File(directory, "car.kfz");
+        journalFile = CarJournal.getJournalFile(file);
+        temporaryFile = new File(journalFile.getAbsolutePath() + ".tmp");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        directory.delete();
+    }
+
+    private static Calendar day(int day) {
+        return new GregorianCalendar(2005, 0, day);
+    }
+
+    /**
+     * Add, change and remove fillings and maintenances in the middle of
+     * the lists, since the journal refers to them by their index.
+     */
+    private static void edit(Car car, int round) {
+        FuelCosts fuel = car.getFuelCosts();
+        for (int i = 0; i < 3; i++)
+            fuel.addFilling(new Filling(day(10 * round + i), 1000 * round + 300 * i, 40.0 + i, 55.5 + round, EUR));
+
+        List<Filling> fillings = fuel.getFillings();
+        Filling changed = fillings.get(fillings.size() / 2);
+        changed.setFilling(new Filling(changed.getDate(), changed.getMileage() + 10, 33.3, 44.4, EUR));
+        fuel.changeFilling(changed);
+        fuel.removeFilling(fillings.get(1));
+
+        MaintenanceCosts maintenance = car.getMaintenanceCosts();
+        maintenance.addMaintenance(new Maintenance(day(10 * round + 5), 1000 * round + 500, "Inspektion " + round,
+                round % 2 == 0 ? null : "l und Filter", 150.0 + round, EUR));
+        Maintenance first = maintenance.getMaintenances().get(0);
+        first.setMaintenance(new Maintenance(first.getDate(), first.getMileage(), "TV " + round, first.getNote(),
+                first.getCosts(), EUR));
+        maintenance.changeMaintenance(first);
+        if (maintenance.getSize() > 2)
+            maintenance.removeMaintenance(maintenance.getMaintenances().get(1));
+
+        car.getNameModel().setValue("Golf " + round);
+    }
+
+    private byte[] toBytes(Car car) throws IOException {
+        File compare = new File(directory, "compare.kfz");
+        CarSnapshot.write(car, compare);
+        byte[] bytes = Files.readAllBytes(compare.toPath());
+        compare.delete();
+        return bytes;
+    }
+
+    private Car createCar() throws IOException {
+        Car car = new Car();
+        car.getSignModel().setValue("S-CP 1998");
+        edit(car, 1);
+        car.writeSnapshot(file);
+        return car;
+    }
+
+    private void corrupt(File file, long position) throws IOException {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            access.seek(position);
+            int value = access.read();
+            access.seek(position);
+            access.write(value ^ 0xFF);
+        } finally {
+            access.close();
+        }
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        Car car = createCar();
+        long snapshotLength = file.length();
+        edit(car, 2);
+        car.save(file);
+        edit(car, 3);
+        car.save(file);
+
+        assertEquals(snapshotLength, file.length());
+        assertTrue(journalFile.exists());
+        assertArrayEquals(toBytes(car), toBytes(new Car(file)));
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        Car car = createCar();
+        edit(car, 2);
+        car.save(file);
+        long journalLength = journalFile.length();
+
+        // an append interrupted after the length of the record
+        FileOutputStream output = new FileOutputStream(journalFile, true);
+        output.write(new byte[]{0, 0, 0, 40, 1, 2, 3});
+        output.close();
+
+        Car read = new Car(file);
+        assertArrayEquals(toBytes(car), toBytes(read));
+        assertEquals(journalLength - CarJournal.HEADER_SIZE, read.getJournal().getLength());
+
+        // the next append overwrites the torn record
+        edit(read, 3);
+        read.save(file);
+        assertArrayEquals(toBytes(read), toBytes(new Car(file)));
+    }
+
+    @Test
+    public void testChecksumMismatch() throws IOException {
+        Car car = createCar();
+        edit(car, 2);
+        car.save(file);
+        byte[] saved = toBytes(car);
+        long valid = journalFile.length();
+        edit(car, 3);
+        car.save(file);
+
+        // damage the type of the first record of the last save
+        corrupt(journalFile, valid + 4);
+
+        Car read = new Car(file);
+        assertArrayEquals(saved, toBytes(read));
+        assertEquals(valid - CarJournal.HEADER_SIZE, read.getJournal().getLength());
+
+        edit(read, 4);
+        read.save(file);
+        assertArrayEquals(toBytes(read), toBytes(new Car(file)));
+    }
+
+    @Test
+    public void testJournalOfOtherSnapshot() throws IOException {
+        Car car = createCar();
+        edit(car, 2);
+        car.save(file);
+        byte[] journal = Files.readAllBytes(journalFile.toPath());
+
+        edit(car, 3);
+        car.writeSnapshot(file);
+        assertFalse(journalFile.exists());
+
+        Files.write(journalFile.toPath(), journal);
+        Car read = new Car(file);
+        assertArrayEquals(toBytes(car), toBytes(read));
+        assertEquals(0, read.getJournal().getLength());
+    }
+
+    @Test
+    public void testRecoverTemporaryJournal() throws IOException {
+        Car car = createCar();
+        edit(car, 2);
+        car.save(file);
+
+        // a crash after the compacted snapshot and before its journal was moved
+        assertTrue(journalFile.renameTo(temporaryFile));
+        Files.write(journalFile.toPath(), new byte[]{1, 2, 3});
+
+        Car read = new Car(file);
+        assertArrayEquals(toBytes(car), toBytes(read));
+        assertFalse(temporaryFile.exists());
+        assertTrue(journalFile.length() > CarJournal.HEADER_SIZE);
+
+        edit(read, 3);
+        read.save(file);
+        assertArrayEquals(toBytes(read), toBytes(new Car(file)));
+    }
+
+    @Test
+    public void testIgnoreTemporaryJournalOfOtherSnapshot() throws IOException {
+        Car car = createCar();
+        edit(car, 2);
+        car.save(file);
+        Files.copy(journalFile.toPath(), temporaryFile.toPath());
+        corrupt(temporaryFile, 8);
+
+        Car read = new Car(file);
+        assertArrayEquals(toBytes(car), toBytes(read));
+        assertFalse(temporaryFile.exists());
+    }
+
+    @Test
+    public void testReplayAfterCompaction() throws IOException {
+        Car car = createCar();
+        byte[] snapshot = Files.readAllBytes(file.toPath());
+        edit(car, 2);
+        car.save(file);
+        edit(car, 3);
+        car.save(file);
+
+        car.getJournal().compact();
+        assertFalse(journalFile.exists());
+        assertEquals(0, car.getJournal().getLength());
+        assertFalse(Arrays.equals(snapshot, Files.readAllBytes(file.toPath())));
+        assertArrayEquals(toBytes(car), toBytes(new Car(file)));
+
+        edit(car, 4);
+        car.save(file);
+        assertTrue(journalFile.exists());
+        assertArrayEquals(toBytes(car), toBytes(new Car(file)));
+    }
+
+    @Test
+    public void testFailedJournalMove() throws Exception {
+        Car car = createCar();
+        CarJournal journal = new CarJournal(car) {
+            void moveJournal(File temporaryFile, File journalFile) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+        journal.replay(file);
+        edit(car, 2);
+        journal.append(journal.takePending(file));
+        car.getSaveModel().setState(false);
+
+        try {
+            journal.compact();
+            fail("Compaction didn't fail");
+        } catch (IOException e) {
+            assertEquals("Disk full", e.getMessage());
+        }
+
+        // the journal doesn't belong to the compacted snapshot anymore
+        assertNull(journal.getFile());
+        assertFalse(journal.canAppend(file));
+        assertNull(journal.takePending(file));
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+            }
+        });
+        assertTrue(car.getSaveModel().getState());
+
+        // the journal left behind is recovered with the compacted snapshot
+        assertTrue(temporaryFile.exists());
+        assertArrayEquals(toBytes(car), toBytes(new Car(file)));
+        assertFalse(temporaryFile.exists());
+    }
+
+    // --- member variables ------------------------------------
+
+    private File directory;
+    private File file;
+    private File journalFile;
+    private File temporaryFile;
+}
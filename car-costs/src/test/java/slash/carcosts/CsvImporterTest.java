@@ -0,0 +1,126 @@
+/*
+  You may freely copy, distribute, modify and use this class as long
+  as the original author attribution remains intact.  See message
+  below.
+
+  Copyright (C) 1998-2006 Christian Pesch. All Rights Reserved.
+*/
+
+package slash.carcosts;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Exports maintenances and fillings with the {@link CsvExporter} and
+ * reads them back with the {@link CsvImporter}.
+ *
+ * @author Christian Pesch
+ */
+
+public class CsvImporterTest {
+    private static final Currency EUR = Currency.getCurrency("EUR");
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("carcosts", ".csv");
+        exporter.setCharset(UTF8);
+        importer.setCharset(UTF8);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private List<Maintenance> roundTrip(Maintenance... maintenances) throws IOException {
+        MaintenanceCosts exported = new MaintenanceCosts();
+        for (Maintenance maintenance : maintenances)
+            exported.addMaintenance(maintenance);
+        exporter.exportMaintenances(exported, file);
+
+        MaintenanceCosts imported = new MaintenanceCosts();
+        assertEquals(maintenances.length, importer.readMaintenances(imported, file));
+        return imported.getMaintenances();
+    }
+
+    private Maintenance maintenance(int day, String title, String note) {
+        return new Maintenance(new GregorianCalendar(2005, 0, day), 1000 * day, title, note, 10.5 * day, EUR);
+    }
+
+    @Test
+    public void testQuotedNote() throws IOException {
+        List<Maintenance> maintenances = roundTrip(
+                maintenance(1, "Inspektion; gro", "\"l\" und Filter; Zndkerzen"));
+        assertEquals("Inspektion; gro", maintenances.get(0).getTitle());
+        assertEquals("\"l\" und Filter; Zndkerzen", maintenances.get(0).getNote());
+    }
+
+    @Test
+    public void testMultiLineNote() throws IOException {
+        List<Maintenance> maintenances = roundTrip(
+                maintenance(1, "Reifen", "Sommerreifen\nvorne\r\nhinten"),
+                maintenance(2, "TV", "ohne Mngel"));
+        assertEquals(2, maintenances.size());
+        assertEquals("Sommerreifen\nvorne\r\nhinten", maintenances.get(0).getNote());
+        assertEquals("TV", maintenances.get(1).getTitle());
+        assertEquals("ohne Mngel", maintenances.get(1).getNote());
+    }
+
+    @Test
+    public void testNullNote() throws IOException {
+        List<Maintenance> maintenances = roundTrip(
+                maintenance(1, null, null),
+                maintenance(2, "null", "null"));
+        assertNull(maintenances.get(0).getTitle());
+        assertNull(maintenances.get(0).getNote());
+        assertEquals("null", maintenances.get(1).getTitle());
+        assertEquals("null", maintenances.get(1).getNote());
+    }
+
+    @Test
+    public void testUnquotedNoteWithDelimiters() throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF8);
+        writer.write("Datum;Kilometerstand;Kosten;Whrung;Beschreibung;Notizen\n" +
+                "01-Jan-2005;1000;10.5;EUR;l;neu; mit Filter\n");
+        writer.close();
+
+        MaintenanceCosts imported = new MaintenanceCosts();
+        assertEquals(1, importer.readMaintenances(imported, file));
+        assertEquals("neu; mit Filter", imported.getMaintenances().get(0).getNote());
+    }
+
+    @Test
+    public void testFillings() throws IOException {
+        FuelCosts exported = new FuelCosts(new ColumnarFillingStore());
+        exported.addFilling(new Filling(new GregorianCalendar(2005, 0, 1), 1000, 40.5, 55.25, EUR));
+        exported.addFilling(new Filling(new GregorianCalendar(2005, 0, 15), 1650, 38.0, 51.75, EUR));
+        exporter.exportFillings(exported, file);
+
+        FuelCosts imported = new FuelCosts(new ColumnarFillingStore());
+        assertEquals(2, importer.readFillings(imported, file));
+        assertEquals(1650, imported.getFillings().get(1).getMileage());
+        assertEquals(51.75, imported.getFillings().get(1).getCosts(), 0.0);
+        assertEquals(exported.getTotalCosts(), imported.getTotalCosts(), 0.0);
+    }
+
+    // --- member variables ------------------------------------
+
+    private File file;
+    private CsvExporter exporter = new CsvExporter();
+    private CsvImporter importer = new CsvImporter();
+}